@@ -0,0 +1,37 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.benchmarks;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import frc.robot.FieldConstants;
+import frc.robot.utils.autoaim.AutoAim;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/** Future pose and virtual target math used by auto aim every loop. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AutoAimBenchmark {
+  private Pose2d pose = new Pose2d(3.0, 5.0, Rotation2d.fromDegrees(20.0));
+  private ChassisSpeeds speeds = new ChassisSpeeds(2.0, -1.0, 0.5);
+
+  @Benchmark
+  public Pose2d linearFuturePose() {
+    return AutoAim.getLinearFuturePose(pose, speeds, AutoAim.LOOKAHEAD_TIME_SECONDS);
+  }
+
+  @Benchmark
+  public Pose2d virtualTarget() {
+    return AutoAim.getVirtualTarget(pose, speeds, FieldConstants.BLUE_SPEAKER_POSE);
+  }
+}
@@ -0,0 +1,66 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.benchmarks;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.subsystems.swerve.SwerveSubsystem;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Kinematics conversions used by runVelocity, getVelocity and odometry. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KinematicsBenchmark {
+  private final SwerveDriveKinematics kinematics =
+      new SwerveDriveKinematics(SwerveSubsystem.getModuleTranslations());
+  private ChassisSpeeds speeds = new ChassisSpeeds(3.0, 1.0, 2.0);
+  private SwerveModuleState[] states;
+  private SwerveModulePosition[] deltas;
+
+  @Setup
+  public void setup() {
+    states = kinematics.toSwerveModuleStates(speeds);
+    deltas = new SwerveModulePosition[4];
+    for (int i = 0; i < 4; i++) {
+      deltas[i] = new SwerveModulePosition(0.02, Rotation2d.fromDegrees(10.0 * i));
+    }
+  }
+
+  @Benchmark
+  public SwerveModuleState[] toModuleStates() {
+    return kinematics.toSwerveModuleStates(speeds);
+  }
+
+  /** The full setpoint path of runVelocity. */
+  @Benchmark
+  public SwerveModuleState[] discretizeAndDesaturate() {
+    SwerveModuleState[] setpoints =
+        kinematics.toSwerveModuleStates(ChassisSpeeds.discretize(speeds, 0.02));
+    SwerveDriveKinematics.desaturateWheelSpeeds(setpoints, SwerveSubsystem.MAX_LINEAR_SPEED);
+    return setpoints;
+  }
+
+  @Benchmark
+  public ChassisSpeeds toChassisSpeeds() {
+    return kinematics.toChassisSpeeds(states);
+  }
+
+  @Benchmark
+  public Twist2d toTwist() {
+    return kinematics.toTwist2d(deltas);
+  }
+}
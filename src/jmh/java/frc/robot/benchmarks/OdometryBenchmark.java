@@ -0,0 +1,73 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.benchmarks;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import frc.robot.subsystems.swerve.Module;
+import frc.robot.subsystems.swerve.OdometryIntegrator;
+import frc.robot.subsystems.swerve.SwerveSubsystem;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** One loop of odometry, with the samples the odometry thread collects in 20 ms. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OdometryBenchmark {
+  private static final int SAMPLES_PER_LOOP = (int) Math.round(Module.ODOMETRY_FREQUENCY_HZ * 0.02);
+
+  private OdometryIntegrator integrator;
+  private final SwerveModulePosition[][] moduleDeltas = new SwerveModulePosition[4][];
+  private final Rotation2d[] gyroYaws = new Rotation2d[SAMPLES_PER_LOOP];
+  private final double[] drivePositions = new double[SAMPLES_PER_LOOP];
+  private final Rotation2d[] turnPositions = new Rotation2d[SAMPLES_PER_LOOP];
+  private final double[] accelX = new double[SAMPLES_PER_LOOP];
+  private final double[] accelY = new double[SAMPLES_PER_LOOP];
+  private final double[] timestamps = new double[SAMPLES_PER_LOOP];
+
+  @Setup
+  public void setup() {
+    integrator = new OdometryIntegrator(SwerveSubsystem.getModuleTranslations());
+    for (int i = 0; i < SAMPLES_PER_LOOP; i++) {
+      gyroYaws[i] = Rotation2d.fromDegrees(0.1 * i);
+      drivePositions[i] = 0.01 * i;
+      turnPositions[i] = Rotation2d.fromDegrees(30.0);
+      accelX[i] = 0.5;
+      accelY[i] = -0.2;
+      timestamps[i] = i / Module.ODOMETRY_FREQUENCY_HZ;
+    }
+    for (int m = 0; m < 4; m++) {
+      moduleDeltas[m] = Module.computePositionDeltas(0.0, drivePositions, turnPositions);
+    }
+  }
+
+  @Benchmark
+  public Pose2d integrateWithGyro() {
+    return integrator.update(moduleDeltas, gyroYaws);
+  }
+
+  @Benchmark
+  public Pose2d integrateWithImu() {
+    return integrator.update(moduleDeltas, gyroYaws, timestamps, accelX, accelY, false);
+  }
+
+  @Benchmark
+  public Pose2d integrateWithoutGyro() {
+    return integrator.update(moduleDeltas, null);
+  }
+
+  @Benchmark
+  public SwerveModulePosition[] computeModuleDeltas() {
+    return Module.computePositionDeltas(0.0, drivePositions, turnPositions);
+  }
+}
@@ -0,0 +1,57 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.benchmarks;
+
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.subsystems.swerve.SwerveSetpointGenerator;
+import frc.robot.subsystems.swerve.SwerveSubsystem;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One loop of the setpoint generator. Alternating between opposite requests keeps a limit active
+ * every call, so the bisection runs when steering is the limit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SetpointGeneratorBenchmark {
+  private final ChassisSpeeds forwards = new ChassisSpeeds(3.0, 0.0, 0.0);
+  private final ChassisSpeeds sideways = new ChassisSpeeds(0.0, 3.0, 1.0);
+  private final ChassisSpeeds backwards = new ChassisSpeeds(-3.0, 0.0, 0.0);
+  private SwerveSetpointGenerator generator;
+  private boolean flip = false;
+
+  @Setup
+  public void setup() {
+    generator =
+        new SwerveSetpointGenerator(
+            SwerveSubsystem.getModuleTranslations(),
+            SwerveSubsystem.MAX_LINEAR_SPEED,
+            SwerveSubsystem.MAX_MODULE_ACCELERATION,
+            SwerveSubsystem.MAX_STEER_VELOCITY);
+  }
+
+  /** Accelerating back and forth, limited by acceleration. */
+  @Benchmark
+  public SwerveModuleState[] accelerationLimited() {
+    flip = !flip;
+    return generator.generate(flip ? forwards : backwards, 0.02);
+  }
+
+  /** Turning the modules 90 degrees, limited by steering. */
+  @Benchmark
+  public SwerveModuleState[] steeringLimited() {
+    flip = !flip;
+    return generator.generate(flip ? forwards : sideways, 0.02);
+  }
+}
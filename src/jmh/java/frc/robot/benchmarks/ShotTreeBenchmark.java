@@ -0,0 +1,41 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.benchmarks;
+
+import frc.robot.utils.autoaim.AutoAim;
+import frc.robot.utils.autoaim.ShotData;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/** Shot map lookups, run every loop by auto aim. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ShotTreeBenchmark {
+  // Non final so the JIT can't constant fold the keys
+  private double exactKey = 4.0;
+  private double interpolatedKey = 4.37;
+  private double outOfRangeKey = 42.0;
+
+  @Benchmark
+  public ShotData getExact() {
+    return AutoAim.shotMap.get(exactKey);
+  }
+
+  @Benchmark
+  public ShotData getInterpolated() {
+    return AutoAim.shotMap.get(interpolatedKey);
+  }
+
+  @Benchmark
+  public ShotData getOutOfRange() {
+    return AutoAim.shotMap.get(outOfRangeKey);
+  }
+}
@@ -4,10 +4,10 @@
 
 package frc.robot;
 
-import com.choreo.lib.Choreo;
 import com.pathplanner.lib.auto.NamedCommands;
 import com.pathplanner.lib.commands.PathPlannerAuto;
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
@@ -16,6 +16,8 @@ import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.PowerDistribution;
 import edu.wpi.first.wpilibj.PowerDistribution.ModuleType;
 import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.BatterySim;
+import edu.wpi.first.wpilibj.simulation.RoboRioSim;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj.util.Color;
 import edu.wpi.first.wpilibj2.command.Command;
@@ -39,16 +41,29 @@ import frc.robot.subsystems.reaction_bar_release.ReactionBarReleaseSubsystem;
 import frc.robot.subsystems.shooter.ShooterIOReal;
 import frc.robot.subsystems.shooter.ShooterIOSim;
 import frc.robot.subsystems.shooter.ShooterSubystem;
-import frc.robot.subsystems.swerve.GyroIO;
 import frc.robot.subsystems.swerve.GyroIOPigeon2;
 import frc.robot.subsystems.swerve.SwerveSubsystem;
 import frc.robot.subsystems.swerve.SwerveSubsystem.AutoAimStates;
 import frc.robot.utils.CommandXboxControllerSubsystem;
 import frc.robot.utils.autoaim.AutoAim;
+import frc.robot.utils.logging.AsyncWPILOGWriter;
+import frc.robot.utils.logging.JvmTelemetry;
+import frc.robot.utils.logging.LoopProfiler;
+import frc.robot.utils.logging.TieredLogger;
+import frc.robot.utils.logging.TieredLogger.Level;
+import frc.robot.utils.phoenix.CANBusBudget;
+import frc.robot.utils.phoenix.PhoenixSignalRegistry;
+import frc.robot.utils.power.PowerManager;
+import frc.robot.utils.power.VoltageCompensation;
+import frc.robot.utils.replay.ReplayRunner;
+import frc.robot.utils.sim.PhysicsSim;
+import frc.robot.utils.startup.WarmUp;
+import frc.robot.utils.trajectory.PackedTrajectory;
 import java.util.function.Supplier;
 import org.littletonrobotics.junction.LogFileUtil;
 import org.littletonrobotics.junction.LoggedRobot;
 import org.littletonrobotics.junction.Logger;
+import org.littletonrobotics.junction.networktables.LoggedDashboardBoolean;
 import org.littletonrobotics.junction.networktables.LoggedDashboardNumber;
 import org.littletonrobotics.junction.networktables.NT4Publisher;
 import org.littletonrobotics.junction.wpilog.WPILOGReader;
@@ -66,30 +81,35 @@ public class Robot extends LoggedRobot {
     SPEAKER
   }
 
-  public static final RobotMode mode = Robot.isReal() ? RobotMode.REAL : RobotMode.SIM;
+  // Replay when a log is passed through the environment, ie by ReplayRunner
+  public static final RobotMode mode =
+      Robot.isReal()
+          ? RobotMode.REAL
+          : System.getenv(ReplayRunner.LOG_PATH_ENVIRONMENT_VARIABLE) != null
+              ? RobotMode.REPLAY
+              : RobotMode.SIM;
   private Command autonomousCommand;
 
   private final CommandXboxControllerSubsystem controller = new CommandXboxControllerSubsystem(0);
   private final CommandXboxControllerSubsystem operator = new CommandXboxControllerSubsystem(1);
 
   private Target currentTarget = Target.SPEAKER;
+  // Only used on the real robot, null otherwise
+  private AsyncWPILOGWriter logWriter = null;
+  private final JvmTelemetry jvmTelemetry = new JvmTelemetry();
+  private final WarmUp warmUp = new WarmUp();
   private double flywheelIdleSpeed = 1.0;
+  private int shotsFired = 0;
+  // Read by the sim harness between loops
+  private volatile boolean feedingShot = false;
+
+  private final LoggedDashboardBoolean obstacleAssist =
+      new LoggedDashboardBoolean("Obstacle Assist", true);
 
   private final SwerveSubsystem swerve =
-      new SwerveSubsystem(
-          mode == RobotMode.REAL
-              ? new GyroIOPigeon2()
-              : new GyroIO() {
-                // Blank implementation to mock gyro in sim
-                @Override
-                public void updateInputs(GyroIOInputs inputs) {}
-
-                @Override
-                public void setYaw(Rotation2d yaw) {}
-              },
-          mode == RobotMode.REAL
-              ? SwerveSubsystem.createTalonFXModules()
-              : SwerveSubsystem.createSimModules());
+      mode == RobotMode.REAL
+          ? new SwerveSubsystem(new GyroIOPigeon2(), SwerveSubsystem.createTalonFXModules())
+          : SwerveSubsystem.createSim();
   private final IntakeSubsystem intake = new IntakeSubsystem(new IntakeIOReal());
   private final FeederSubsystem feeder = new FeederSubsystem(new FeederIOReal());
   private final ElevatorSubsystem elevator = new ElevatorSubsystem(new ElevatorIOSim());
@@ -123,9 +143,12 @@ public class Robot extends LoggedRobot {
 
     switch (mode) {
       case REAL:
-        // Logger.addDataReceiver(new WPILOGWriter("/U")); // Log to a USB stick
+        logWriter = new AsyncWPILOGWriter("/U");
+        Logger.addDataReceiver(logWriter); // Log to a USB stick off the main thread
         Logger.addDataReceiver(new NT4Publisher()); // Publish data to NetworkTables
-        new PowerDistribution(1, ModuleType.kRev); // Enables power distribution logging
+        // Enables power distribution logging, and the battery readings for the current budget
+        PowerManager.setPowerDistribution(new PowerDistribution(1, ModuleType.kRev));
+        PhoenixSignalRegistry.start(); // Acquire CAN signals off the main thread
         break;
       case REPLAY:
         setUseTiming(false); // Run as fast as possible
@@ -136,6 +159,7 @@ public class Robot extends LoggedRobot {
         Logger.addDataReceiver(
             new WPILOGWriter(
                 LogFileUtil.addPathSuffix(logPath, "_sim"))); // Save outputs to a new log
+        ReplayRunner.startReporting(); // Report replay speed on exit
         break;
       case SIM:
         Logger.addDataReceiver(new NT4Publisher()); // Publish data to NetworkTables
@@ -144,23 +168,40 @@ public class Robot extends LoggedRobot {
 
     Logger.start(); // Start logging! No more data receivers, replay sources, or metadata values may
     // be added.
+    LoopProfiler.registerCommandHooks();
+
+    // Supply current budget, in priority order, minimum and maximum total amps
+    PowerManager.register("Swerve", 80.0, 240.0, swerve);
+    PowerManager.register("Elevator", 20.0, 80.0, elevator);
+    PowerManager.register("Shooter", 20.0, 80.0, shooter);
+    PowerManager.register("Feeder", 5.0, 20.0, feeder);
+    PowerManager.register("Carriage", 5.0, 20.0, carriage);
+    PowerManager.register("Intake", 10.0, 60.0, intake);
 
     // Default Commands here
     swerve.setDefaultCommand(
         swerve.runVelocityFieldRelative(
-            () ->
-                new ChassisSpeeds(
-                    -teleopAxisAdjustment(controller.getLeftY()) * SwerveSubsystem.MAX_LINEAR_SPEED,
-                    -teleopAxisAdjustment(controller.getLeftX()) * SwerveSubsystem.MAX_LINEAR_SPEED,
-                    -teleopAxisAdjustment(controller.getRightX())
-                        * SwerveSubsystem.MAX_ANGULAR_SPEED)));
+            () -> {
+              ChassisSpeeds speeds =
+                  new ChassisSpeeds(
+                      -teleopAxisAdjustment(controller.getLeftY())
+                          * SwerveSubsystem.MAX_LINEAR_SPEED,
+                      -teleopAxisAdjustment(controller.getLeftX())
+                          * SwerveSubsystem.MAX_LINEAR_SPEED,
+                      -teleopAxisAdjustment(controller.getRightX())
+                          * SwerveSubsystem.MAX_ANGULAR_SPEED);
+              return obstacleAssist.get() ? swerve.assistObstacleAvoidance(speeds) : speeds;
+            }));
     elevator.setDefaultCommand(elevator.setExtensionCmd(() -> 0.0));
     feeder.setDefaultCommand(feeder.runVoltageCmd(0.0));
     carriage.setDefaultCommand(carriage.runVoltageCmd(0.0));
     intake.setDefaultCommand(intake.runVoltageCmd(10.0));
     shooter.setDefaultCommand(
         shooter.runStateCmd(
-            () -> Rotation2d.fromDegrees(0.0), () -> flywheelIdleSpeed, () -> flywheelIdleSpeed));
+            () -> Rotation2d.fromDegrees(0.0),
+            // Idle slower while the flywheels are predicted to overheat
+            () -> flywheelIdleSpeed * shooter.getThermalDerate(),
+            () -> flywheelIdleSpeed * shooter.getThermalDerate()));
     reactionBarRelease.setDefaultCommand(
         reactionBarRelease.setRotationCmd(Rotation2d.fromDegrees(0.0)));
     leds.setDefaultCommand(
@@ -171,66 +212,76 @@ public class Robot extends LoggedRobot {
     operator.setDefaultCommand(operator.rumbleCmd(0.0, 0.0));
 
     // Robot state management bindings
-    new Trigger(() -> carriage.getBeambreak() || feeder.getFirstBeambreak())
+    new Trigger(LoopProfiler.timed("Has Note", this::hasNote))
         .debounce(0.25)
         .whileTrue(
             Commands.parallel(
-                intake.runVoltageCmd(0.0).withInterruptBehavior(InterruptionBehavior.kCancelSelf),
-                controller.rumbleCmd(1.0, 1.0).withTimeout(0.25),
-                leds.setBlinkingCmd(new Color("#ff8000"), new Color("#000000"), 25.0)));
-    new Trigger(() -> currentTarget == Target.SPEAKER)
-        .whileTrue(Commands.parallel(carriage.runVoltageCmd(5.0), feeder.indexCmd()));
-    new Trigger(() -> currentTarget == Target.AMP)
+                    intake
+                        .runVoltageCmd(0.0)
+                        .withInterruptBehavior(InterruptionBehavior.kCancelSelf),
+                    controller.rumbleCmd(1.0, 1.0).withTimeout(0.25),
+                    leds.setBlinkingCmd(new Color("#ff8000"), new Color("#000000"), 25.0))
+                .withName("Note Acquired"));
+    new Trigger(LoopProfiler.timed("Target Speaker", () -> currentTarget == Target.SPEAKER))
+        .whileTrue(
+            Commands.parallel(carriage.runVoltageCmd(5.0), feeder.indexCmd())
+                .withName("Index Speaker"));
+    new Trigger(LoopProfiler.timed("Target Amp", () -> currentTarget == Target.AMP))
         .whileTrue(
             Commands.either(
-                Commands.parallel(carriage.indexBackwardsCmd(), feeder.runVoltageCmd(-5.0)),
-                Commands.parallel(carriage.indexForwardsCmd(), feeder.runVoltageCmd(0.0)),
-                () -> feeder.getFirstBeambreak()));
+                    Commands.parallel(carriage.indexBackwardsCmd(), feeder.runVoltageCmd(-5.0)),
+                    Commands.parallel(carriage.indexForwardsCmd(), feeder.runVoltageCmd(0.0)),
+                    () -> feeder.getFirstBeambreak())
+                .withName("Index Amp"));
 
     // ---- Controller bindings here ----
     controller.leftTrigger().whileTrue(intake.runVoltageCmd(10.0));
     controller
         .rightTrigger()
-        .and(() -> currentTarget == Target.SPEAKER)
+        .and(LoopProfiler.timed("Shoot Speaker", () -> currentTarget == Target.SPEAKER))
         .whileTrue(
             Commands.parallel(
-                shooter.runStateCmd(Rotation2d.fromDegrees(80.0), 50.0, 40.0),
-                Commands.waitSeconds(0.5).andThen(feeder.runVoltageCmd(3.0))));
+                    shooter.runStateCmd(Rotation2d.fromDegrees(80.0), 50.0, 40.0),
+                    Commands.waitSeconds(0.5).andThen(feedShotCmd()))
+                .withName("Shoot Speaker"));
     controller
         .rightTrigger()
-        .and(() -> currentTarget == Target.SPEAKER)
+        .and(LoopProfiler.timed("Aim At Speaker", () -> currentTarget == Target.SPEAKER))
         .whileTrue(
             Commands.parallel(
-                teleopAutoAim(
-                    () -> {
-                      double vx = swerve.getVelocity().vxMetersPerSecond;
-                      double vy = swerve.getVelocity().vyMetersPerSecond;
-                      double vTheta = swerve.getVelocity().omegaRadiansPerSecond;
-
-                      double polarVelocity =
-                          MathUtil.clamp(
-                              Math.sqrt(Math.pow(vx, 2) + Math.pow(vy, 2)),
-                              -SwerveSubsystem.MAX_LINEAR_SPEED / 2,
-                              SwerveSubsystem.MAX_LINEAR_SPEED / 2);
-                      double polarRadians = Math.atan2(vy, vx);
-                      ChassisSpeeds polarSpeeds =
-                          new ChassisSpeeds(
-                              polarVelocity * Math.cos(polarRadians),
-                              polarVelocity * Math.sin(polarRadians),
-                              vTheta);
-                      Logger.recordOutput("AutoAim/Polar Speeds", polarSpeeds);
-                      return polarSpeeds;
-                    }),
-                Commands.waitSeconds(0.5).andThen(feeder.runVoltageCmd(3.0))));
+                    teleopAutoAim(
+                        () -> {
+                          double vx = swerve.getVelocity().vxMetersPerSecond;
+                          double vy = swerve.getVelocity().vyMetersPerSecond;
+                          double vTheta = swerve.getVelocity().omegaRadiansPerSecond;
+
+                          double polarVelocity =
+                              MathUtil.clamp(
+                                  Math.sqrt(Math.pow(vx, 2) + Math.pow(vy, 2)),
+                                  -SwerveSubsystem.MAX_LINEAR_SPEED / 2,
+                                  SwerveSubsystem.MAX_LINEAR_SPEED / 2);
+                          double polarRadians = Math.atan2(vy, vx);
+                          ChassisSpeeds polarSpeeds =
+                              new ChassisSpeeds(
+                                  polarVelocity * Math.cos(polarRadians),
+                                  polarVelocity * Math.sin(polarRadians),
+                                  vTheta);
+                          TieredLogger.recordOutput(
+                              Level.DEBUG, "AutoAim/Polar Speeds", polarSpeeds);
+                          return polarSpeeds;
+                        }),
+                    Commands.waitSeconds(0.5).andThen(feedShotCmd()))
+                .withName("Aim At Speaker"));
     controller
         .rightTrigger()
-        .and(() -> currentTarget == Target.AMP)
+        .and(LoopProfiler.timed("Score Amp", () -> currentTarget == Target.AMP))
         .whileTrue(elevator.setExtensionCmd(() -> ElevatorSubsystem.AMP_EXTENSION_METERS))
         .onFalse(
             Commands.parallel(
                     carriage.runVoltageCmd(-3.0),
                     elevator.setExtensionCmd(() -> ElevatorSubsystem.AMP_EXTENSION_METERS))
-                .withTimeout(0.5));
+                .withTimeout(0.5)
+                .withName("Score Amp Release"));
     controller.rightBumper().whileTrue(swerve.stopWithXCmd());
     // Heading reset
     controller
@@ -249,7 +300,11 @@ public class Robot extends LoggedRobot {
 
     controller
         .y()
-        .and(() -> elevator.getExtensionMeters() > 0.9 * ElevatorSubsystem.CLIMB_EXTENSION_METERS)
+        .and(
+            LoopProfiler.timed(
+                "Climb Extended",
+                () ->
+                    elevator.getExtensionMeters() > 0.9 * ElevatorSubsystem.CLIMB_EXTENSION_METERS))
         .onTrue(
             Commands.sequence(
                     elevator
@@ -315,27 +370,51 @@ public class Robot extends LoggedRobot {
                           polarVelocity * Math.cos(polarRadians),
                           polarVelocity * Math.sin(polarRadians),
                           vTheta);
-                  Logger.recordOutput("AutoAim/Polar Sppeeds", polarSpeeds);
+                  TieredLogger.recordOutput(Level.DEBUG, "AutoAim/Polar Sppeeds", polarSpeeds);
                   return polarSpeeds;
                 }));
 
     // Dashboard command buttons
     SmartDashboard.putData("Run Swerve Azimuth Sysid", swerve.runModuleSteerCharacterizationCmd());
     SmartDashboard.putData("Run Swerve Drive Sysid", swerve.runDriveCharacterizationCmd());
+    SmartDashboard.putData(
+        "Run Wheel Radius Characterization", swerve.runWheelRadiusCharacterizationCmd());
     SmartDashboard.putData("Run Elevator Sysid", elevator.runSysidCmd());
     SmartDashboard.putData("Run Pivot Sysid", shooter.runPivotSysidCmd());
     SmartDashboard.putData("Run Flywheel Sysid", shooter.runFlywheelSysidCmd());
+
+    WarmUp.logInitComplete();
   }
 
   @Override
   public void robotPeriodic() {
+    LoopProfiler.beginLoop();
+    // Latch the latest CAN signal snapshot before subsystems read it
+    PhoenixSignalRegistry.latch();
+    TieredLogger.periodic();
+    // Speed up shooter signals while a speaker shot is held
+    CANBusBudget.periodic(
+        controller.getRightTriggerAxis() > 0.5 && currentTarget == Target.SPEAKER);
     CommandScheduler.getInstance().run();
+    // Share out the current budget from this loop's readings
+    PowerManager.periodic();
+    VoltageCompensation.periodic();
     // Update ascope mechanism visualization
-    Logger.recordOutput(
+    TieredLogger.recordOutput(
+        Level.DEBUG,
         "Mechanism Poses",
         new Pose3d[] {
           shooter.getMechanismPose(), elevator.getCarriagePose(), elevator.getFirstStagePose()
         });
+    Logger.recordOutput("Shots Fired", shotsFired);
+    if (logWriter != null) {
+      logWriter.logMetrics();
+    }
+    LoopProfiler.endLoop();
+    jvmTelemetry.periodic();
+    if (mode == RobotMode.REPLAY) {
+      ReplayRunner.loopCompleted();
+    }
   }
 
   private LoggedDashboardNumber rotation = new LoggedDashboardNumber("Rotation (Rotations)");
@@ -422,6 +501,8 @@ public class Robot extends LoggedRobot {
   }
 
   public Command autonomousAutoAim(String pathName) {
+    // Load the trajectory now so the first auto doesn't pay for it
+    PackedTrajectory.load(pathName);
 
     return Commands.sequence(
         Commands.deadline(
@@ -435,7 +516,7 @@ public class Robot extends LoggedRobot {
             .beforeStarting(
                 () -> {
                   AutoAimStates.pathName = pathName;
-                  AutoAimStates.pathTotalTime = Choreo.getTrajectory(pathName).getTotalTime();
+                  AutoAimStates.pathTotalTime = PackedTrajectory.load(pathName).getTotalTime();
                 },
                 swerve),
         Commands.print("Whoosh!"),
@@ -445,7 +526,20 @@ public class Robot extends LoggedRobot {
   }
 
   @Override
-  public void disabledPeriodic() {}
+  public void simulationPeriodic() {
+    // Replay reads inputs from the log, so there is nothing to simulate
+    if (mode == RobotMode.SIM) {
+      PhysicsSim.step(getPeriod());
+      // Sag the simulated battery under the mechanisms' draw
+      RoboRioSim.setVInVoltage(
+          BatterySim.calculateDefaultBatteryLoadedVoltage(PowerManager.getTotalCurrentAmps()));
+    }
+  }
+
+  @Override
+  public void disabledPeriodic() {
+    warmUp.periodic();
+  }
 
   @Override
   public void autonomousInit() {
@@ -471,6 +565,38 @@ public class Robot extends LoggedRobot {
     CommandScheduler.getInstance().cancelAll();
   }
 
+  /** Returns the estimated robot pose. */
+  public Pose2d getPose() {
+    return swerve.getPose();
+  }
+
+  /** Returns the number of notes that have left the robot through the shooter since startup. */
+  public int getShotsFired() {
+    return shotsFired;
+  }
+
+  /** Returns whether the feeder is pushing a note into the flywheels. */
+  public boolean isFeedingShot() {
+    return feedingShot;
+  }
+
+  /** Returns whether a note is in the carriage or the feeder. */
+  private boolean hasNote() {
+    return carriage.getBeambreak() || feeder.getFirstBeambreak();
+  }
+
+  /** Feeds a note into the flywheels, counting a shot once the note has left the beambreaks. */
+  private Command feedShotCmd() {
+    return feeder
+        .runVoltageCmd(3.0)
+        .alongWith(
+            Commands.waitUntil(this::hasNote)
+                .andThen(
+                    Commands.waitUntil(() -> !hasNote()), Commands.runOnce(() -> shotsFired++)))
+        .beforeStarting(() -> feedingShot = true)
+        .finallyDo(() -> feedingShot = false);
+  }
+
   /** Modifies the given joystick axis value to make teleop driving smoother. */
   private static double teleopAxisAdjustment(double x) {
     return MathUtil.applyDeadband(Math.abs(Math.pow(x, 2)) * Math.signum(x), 0.02);
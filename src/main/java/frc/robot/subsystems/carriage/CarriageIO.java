@@ -20,4 +20,7 @@ public interface CarriageIO {
   public void updateInputs(final CarriageIOInputsAutoLogged inputs);
 
   public void setVoltage(final double volts);
+
+  /** Limits the supply current drawn by the carriage. */
+  public default void setSupplyCurrentLimit(final double amps) {}
 }
@@ -6,17 +6,27 @@ package frc.robot.subsystems.carriage;
 
 import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.configs.CurrentLimitsConfigs;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.VoltageOut;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.InvertedValue;
 import edu.wpi.first.wpilibj.DigitalInput;
+import frc.robot.utils.phoenix.CANBusBudget;
+import frc.robot.utils.phoenix.CANBusBudget.SignalClass;
+import frc.robot.utils.phoenix.ControlDeduplicator;
+import frc.robot.utils.phoenix.PhoenixSignalRegistry;
+import frc.robot.utils.power.VoltageCompensation;
 
 /** Create a CarriageIO that uses a real TalonFX. */
 public class CarriageIOReal implements CarriageIO {
+  public static final int BEAMBREAK_CHANNEL = 2;
+
   final TalonFX motor = new TalonFX(18);
+  private final ControlDeduplicator motorControl = new ControlDeduplicator(motor);
+  private final VoltageCompensation compensation = new VoltageCompensation("Carriage");
 
-  final DigitalInput beambreak = new DigitalInput(2);
+  final DigitalInput beambreak = new DigitalInput(BEAMBREAK_CHANNEL);
 
   final VoltageOut voltageOut = new VoltageOut(0.0).withEnableFOC(true);
 
@@ -25,24 +35,31 @@ public class CarriageIOReal implements CarriageIO {
   final StatusSignal<Double> amperage = motor.getStatorCurrent();
   final StatusSignal<Double> temp = motor.getDeviceTemp();
 
+  // Kept to change the limit without reapplying the whole config
+  private final CurrentLimitsConfigs currentLimits;
+
   public CarriageIOReal() {
     var config = new TalonFXConfiguration();
 
     config.MotorOutput.Inverted = InvertedValue.CounterClockwise_Positive;
 
     motor.getConfigurator().apply(config);
+    currentLimits = config.CurrentLimits;
     BaseStatusSignal.setUpdateFrequencyForAll(50.0, velocity, voltage, amperage, temp);
     motor.optimizeBusUtilization();
+    PhoenixSignalRegistry.register(motor, velocity, voltage, amperage, temp);
+    CANBusBudget.register(motor, SignalClass.STATE, velocity);
+    CANBusBudget.register(motor, SignalClass.TELEMETRY, voltage, amperage);
+    CANBusBudget.register(motor, SignalClass.TEMPERATURE, temp);
   }
 
   /** Updates the set of loggable inputs. */
   @Override
   public void updateInputs(final CarriageIOInputsAutoLogged inputs) {
-    BaseStatusSignal.refreshAll(velocity, voltage, amperage, temp);
-    inputs.velocityRotationsPerSecond = velocity.getValueAsDouble();
-    inputs.appliedVolts = voltage.getValueAsDouble();
-    inputs.currentAmps = new double[] {amperage.getValueAsDouble()};
-    inputs.temperatureCelsius = new double[] {temp.getValueAsDouble()};
+    inputs.velocityRotationsPerSecond = PhoenixSignalRegistry.getValue(velocity);
+    inputs.appliedVolts = PhoenixSignalRegistry.getValue(voltage);
+    inputs.currentAmps = new double[] {PhoenixSignalRegistry.getValue(amperage)};
+    inputs.temperatureCelsius = new double[] {PhoenixSignalRegistry.getValue(temp)};
 
     inputs.beambreak = beambreak.get();
   }
@@ -50,6 +67,16 @@ public class CarriageIOReal implements CarriageIO {
   /** Run the intake at a specified voltage */
   @Override
   public void setVoltage(final double volts) {
-    motor.setControl(voltageOut.withOutput(volts));
+    double limited = compensation.limit(volts);
+    motorControl.setControl(voltageOut.withOutput(limited), limited);
+  }
+
+  @Override
+  public void setSupplyCurrentLimit(final double amps) {
+    currentLimits.SupplyCurrentLimit = amps;
+    currentLimits.SupplyCurrentThreshold = amps;
+    currentLimits.SupplyTimeThreshold = 0.0;
+    currentLimits.SupplyCurrentLimitEnable = true;
+    motor.getConfigurator().apply(currentLimits, 0.0);
   }
 }
@@ -7,14 +7,21 @@ package frc.robot.subsystems.carriage;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.logging.LoopProfiler;
+import frc.robot.utils.logging.TieredLogger;
+import frc.robot.utils.logging.TieredLogger.Level;
+import frc.robot.utils.power.MotorThermalModel;
+import frc.robot.utils.power.PowerManager;
 import org.littletonrobotics.junction.Logger;
 
 /** Drainpipe style amp/trap mechanism on the elevator */
-public class CarriageSubsystem extends SubsystemBase {
+public class CarriageSubsystem extends SubsystemBase implements PowerManager.Consumer {
   public static final double INDEXING_VOLTAGE = 3.0;
 
   final CarriageIO io;
   final CarriageIOInputsAutoLogged inputs = new CarriageIOInputsAutoLogged();
+  private final LoopProfiler.Section periodicProfile = LoopProfiler.section("Subsystems/Carriage");
+  private final MotorThermalModel thermalModel = new MotorThermalModel(1);
 
   /** Creates a new CarriageSubsystem. */
   public CarriageSubsystem(CarriageIO io) {
@@ -23,8 +30,16 @@ public class CarriageSubsystem extends SubsystemBase {
 
   @Override
   public void periodic() {
+    periodicProfile.start();
     io.updateInputs(inputs);
     Logger.processInputs("Intake", inputs);
+    if (inputs.currentAmps.length > 0 && inputs.temperatureCelsius.length > 0) {
+      thermalModel.update(0, inputs.currentAmps[0], inputs.temperatureCelsius[0]);
+    }
+    Logger.recordOutput("Carriage/Thermal Derate", thermalModel.getDerate());
+    TieredLogger.recordOutput(
+        Level.DEBUG, "Carriage/Predicted Temperatures", thermalModel.getPredictedTemperaturesC());
+    periodicProfile.stop();
   }
 
   /** Run the carriage roller at the specified voltage */
@@ -54,4 +69,23 @@ public class CarriageSubsystem extends SubsystemBase {
   public boolean getBeambreak() {
     return inputs.beambreak;
   }
+
+  @Override
+  public double getSupplyCurrentAmps() {
+    double amps = 0.0;
+    for (double motorAmps : inputs.currentAmps) {
+      amps += PowerManager.estimateSupplyCurrent(inputs.appliedVolts, motorAmps);
+    }
+    return amps;
+  }
+
+  @Override
+  public void setSupplyCurrentLimit(double amps) {
+    io.setSupplyCurrentLimit(amps);
+  }
+
+  @Override
+  public double getThermalDerate() {
+    return thermalModel.getDerate();
+  }
 }
@@ -22,6 +22,9 @@ public interface ElevatorIO {
 
   public void setVoltage(final double voltage);
 
+  /** Limits the supply current drawn by the elevator motors together. */
+  public default void setSupplyCurrentLimit(final double amps) {}
+
   public default void stop() {
     setVoltage(0);
   }
@@ -6,6 +6,7 @@ package frc.robot.subsystems.elevator;
 
 import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.configs.CurrentLimitsConfigs;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.Follower;
 import com.ctre.phoenix6.controls.MotionMagicVoltage;
@@ -13,11 +14,18 @@ import com.ctre.phoenix6.controls.VoltageOut;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.GravityTypeValue;
 import com.ctre.phoenix6.signals.InvertedValue;
+import frc.robot.utils.characterization.CharacterizationConfig;
+import frc.robot.utils.characterization.FeedforwardGains;
+import frc.robot.utils.phoenix.CANBusBudget;
+import frc.robot.utils.phoenix.CANBusBudget.SignalClass;
+import frc.robot.utils.phoenix.ControlDeduplicator;
+import frc.robot.utils.phoenix.PhoenixSignalRegistry;
 
 /** Elevator IO using TalonFXs. */
 public class ElevatorIOReal implements ElevatorIO {
   private final TalonFX motor = new TalonFX(16);
   private final TalonFX follower = new TalonFX(17);
+  private final ControlDeduplicator motorControl = new ControlDeduplicator(motor);
 
   private final VoltageOut voltageOut = new VoltageOut(0.0).withEnableFOC(true);
   private final MotionMagicVoltage positionVoltage =
@@ -29,16 +37,21 @@ public class ElevatorIOReal implements ElevatorIO {
   private final StatusSignal<Double> current = motor.getStatorCurrent();
   private final StatusSignal<Double> temp = motor.getDeviceTemp();
 
+  // Kept to change the limit without reapplying the whole config
+  private final CurrentLimitsConfigs currentLimits;
+
   public ElevatorIOReal() {
     var config = new TalonFXConfiguration();
 
     config.MotorOutput.Inverted = InvertedValue.CounterClockwise_Positive;
 
     config.Slot0.GravityType = GravityTypeValue.Elevator_Static;
-    config.Slot0.kG = 0.0;
-    config.Slot0.kS = 0.0;
-    config.Slot0.kV = 0.0;
-    config.Slot0.kA = 0.0;
+    FeedforwardGains gains =
+        CharacterizationConfig.getGains("Elevator", new FeedforwardGains(0.0, 0.0, 0.0, 0.0));
+    config.Slot0.kG = gains.kG();
+    config.Slot0.kS = gains.kS();
+    config.Slot0.kV = gains.kV();
+    config.Slot0.kA = gains.kA();
     config.Slot0.kP = 0.0;
     config.Slot0.kD = 0.0;
 
@@ -56,36 +69,51 @@ public class ElevatorIOReal implements ElevatorIO {
 
     motor.getConfigurator().apply(config);
     motor.setPosition(0.0); // Assume we boot 0ed
+    currentLimits = config.CurrentLimits;
     follower.getConfigurator().apply(new TalonFXConfiguration());
     follower.setControl(new Follower(motor.getDeviceID(), true));
 
     BaseStatusSignal.setUpdateFrequencyForAll(50.0, position, velocity, voltage, current, temp);
     motor.optimizeBusUtilization();
     follower.optimizeBusUtilization();
+    PhoenixSignalRegistry.register(motor, position, velocity, voltage, current, temp);
+    CANBusBudget.register(motor, SignalClass.STATE, position, velocity);
+    CANBusBudget.register(motor, SignalClass.TELEMETRY, voltage, current);
+    CANBusBudget.register(motor, SignalClass.TEMPERATURE, temp);
   }
 
   @Override
   public void updateInputs(final ElevatorIOInputsAutoLogged inputs) {
-    BaseStatusSignal.refreshAll(position, velocity, voltage, current, temp);
-    inputs.elevatorPositionMeters = position.getValueAsDouble();
-    inputs.elevatorVelocityMetersPerSec = velocity.getValueAsDouble();
-    inputs.elevatorAppliedVolts = voltage.getValueAsDouble();
-    inputs.elevatorCurrentAmps = new double[] {current.getValueAsDouble()};
-    inputs.elevatorTempCelsius = new double[] {temp.getValueAsDouble()};
+    inputs.elevatorPositionMeters = PhoenixSignalRegistry.getValue(position);
+    inputs.elevatorVelocityMetersPerSec = PhoenixSignalRegistry.getValue(velocity);
+    inputs.elevatorAppliedVolts = PhoenixSignalRegistry.getValue(voltage);
+    inputs.elevatorCurrentAmps = new double[] {PhoenixSignalRegistry.getValue(current)};
+    inputs.elevatorTempCelsius = new double[] {PhoenixSignalRegistry.getValue(temp)};
   }
 
   @Override
   public void setTarget(final double meters) {
-    motor.setControl(positionVoltage.withPosition(meters));
+    motorControl.setControl(positionVoltage.withPosition(meters), meters);
   }
 
   @Override
   public void setVoltage(final double voltage) {
-    motor.setControl(voltageOut.withOutput(voltage));
+    motorControl.setControl(voltageOut.withOutput(voltage), voltage);
   }
 
   @Override
   public void resetEncoder(final double position) {
     motor.setPosition(position);
   }
+
+  @Override
+  public void setSupplyCurrentLimit(final double amps) {
+    // Shared evenly between the motors
+    currentLimits.SupplyCurrentLimit = amps / 2.0;
+    currentLimits.SupplyCurrentThreshold = amps / 2.0;
+    currentLimits.SupplyTimeThreshold = 0.0;
+    currentLimits.SupplyCurrentLimitEnable = true;
+    motor.getConfigurator().apply(currentLimits, 0.0);
+    follower.getConfigurator().apply(currentLimits, 0.0);
+  }
 }
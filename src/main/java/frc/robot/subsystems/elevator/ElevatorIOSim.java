@@ -4,60 +4,111 @@
 
 package frc.robot.subsystems.elevator;
 
-import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.ElevatorFeedforward;
 import edu.wpi.first.math.controller.ProfiledPIDController;
 import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.trajectory.TrapezoidProfile.Constraints;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.DriverStation;
-import edu.wpi.first.wpilibj.simulation.ElevatorSim;
+import edu.wpi.first.wpilibj.RobotBase;
+import frc.robot.utils.sim.MotorMechanismSim;
+import frc.robot.utils.sim.PhysicsSim;
 
-/** WPILib physics model based elevator sim. */
-public class ElevatorIOSim implements ElevatorIO {
-  ElevatorSim physicsSim =
-      new ElevatorSim(
+/**
+ * Elevator sim stepped by PhysicsSim.
+ *
+ * <p>The robot also runs this sim on the real robot, where PhysicsSim isn't stepped, so there it
+ * steps itself at the control rate once per loop from updateInputs.
+ *
+ * <p>Modeled as the drum of a motor mechanism sim, the same plant as WPILib's ElevatorSim with the
+ * carriage mass moved to the drum radius.
+ */
+public class ElevatorIOSim implements ElevatorIO, PhysicsSim.Mechanism {
+  private static final double DRUM_RADIUS = ElevatorSubsystem.DRUM_RADIUS_METERS;
+  // Add half of first stage mass bc its on a 2:1 ratio compared to carriage
+  private static final double MASS_KG = Units.lbsToKilograms(10.8 + (2.5 / 2));
+  private static final double LOOP_PERIOD_SECONDS = 0.02;
+  private static final int STANDALONE_STEPS =
+      (int) Math.round(LOOP_PERIOD_SECONDS / PhysicsSim.CONTROL_PERIOD_SECONDS);
+
+  MotorMechanismSim physicsSim =
+      new MotorMechanismSim(
           DCMotor.getKrakenX60Foc(2),
           ElevatorSubsystem.GEAR_RATIO,
-          // Add half of first stage mass bc its on a 2:1 ratio compared to carriage
-          Units.lbsToKilograms(10.8 + (2.5 / 2)),
-          ElevatorSubsystem.DRUM_RADIUS_METERS,
+          MASS_KG * DRUM_RADIUS * DRUM_RADIUS,
           0.0,
-          Units.inchesToMeters(32.0),
-          true,
-          0.0);
-  double volts = 0.0;
-  ProfiledPIDController pid = new ProfiledPIDController(40.0, 0.0, 0.0, new Constraints(10.0, 5.0));
+          Units.inchesToMeters(32.0) / DRUM_RADIUS,
+          (position) -> -9.8 / DRUM_RADIUS);
+  ProfiledPIDController pid =
+      new ProfiledPIDController(
+          40.0, 0.0, 0.0, new Constraints(10.0, 5.0), PhysicsSim.CONTROL_PERIOD_SECONDS);
   ElevatorFeedforward ff = new ElevatorFeedforward(0.0, 0.06, 12.6);
 
+  // Closed loop setpoint, run by updateControl until a voltage is set
+  private boolean closedLoop = false;
+  private double targetMeters = 0.0;
+  private final boolean standalone = RobotBase.isReal();
+
+  public ElevatorIOSim() {
+    if (!standalone) {
+      PhysicsSim.register(this);
+    }
+  }
+
   @Override
   public void updateInputs(final ElevatorIOInputsAutoLogged inputs) {
     if (DriverStation.isDisabled()) {
       stop();
     }
-    physicsSim.update(0.020);
-    inputs.elevatorPositionMeters = physicsSim.getPositionMeters();
-    inputs.elevatorVelocityMetersPerSec = physicsSim.getVelocityMetersPerSecond();
-    inputs.elevatorAppliedVolts = volts;
+    if (standalone) {
+      boolean enabled = DriverStation.isEnabled();
+      for (int i = 0; i < STANDALONE_STEPS; i++) {
+        if (enabled) {
+          updateControl();
+        }
+        step(PhysicsSim.CONTROL_PERIOD_SECONDS, enabled);
+      }
+    }
+    inputs.elevatorPositionMeters = physicsSim.getPositionRad() * DRUM_RADIUS;
+    inputs.elevatorVelocityMetersPerSec = physicsSim.getVelocityRadPerSec() * DRUM_RADIUS;
+    inputs.elevatorAppliedVolts = physicsSim.getAppliedVolts();
     inputs.elevatorCurrentAmps = new double[] {physicsSim.getCurrentDrawAmps()};
     inputs.elevatorTempCelsius = new double[] {20.0};
   }
 
+  @Override
+  public void updateControl() {
+    if (closedLoop) {
+      physicsSim.setInputVoltage(
+          pid.calculate(physicsSim.getPositionRad() * DRUM_RADIUS, targetMeters)
+              + ff.calculate(pid.getSetpoint().velocity));
+    }
+  }
+
+  @Override
+  public void step(double dtSeconds, boolean enabled) {
+    physicsSim.update(dtSeconds, enabled);
+  }
+
   @Override
   public void setTarget(final double meters) {
-    setVoltage(
-        pid.calculate(physicsSim.getPositionMeters(), meters)
-            + ff.calculate(pid.getSetpoint().velocity));
+    closedLoop = true;
+    targetMeters = meters;
   }
 
   @Override
   public void setVoltage(final double voltage) {
-    volts = voltage;
-    physicsSim.setInputVoltage(MathUtil.clamp(voltage, -12.0, 12.0));
+    closedLoop = false;
+    physicsSim.setInputVoltage(voltage);
+  }
+
+  @Override
+  public void setSupplyCurrentLimit(final double amps) {
+    physicsSim.setSupplyCurrentLimit(amps);
   }
 
   @Override
   public void resetEncoder(final double position) {
-    physicsSim.setState(position, 0.0);
+    physicsSim.setState(position / DRUM_RADIUS, 0.0);
   }
 }
@@ -21,11 +21,18 @@ import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine.Direction;
+import frc.robot.utils.characterization.FeedforwardFitter;
+import frc.robot.utils.characterization.FeedforwardFitter.Gravity;
+import frc.robot.utils.logging.LoopProfiler;
+import frc.robot.utils.logging.TieredLogger;
+import frc.robot.utils.logging.TieredLogger.Level;
+import frc.robot.utils.power.MotorThermalModel;
+import frc.robot.utils.power.PowerManager;
 import java.util.function.DoubleSupplier;
 import org.littletonrobotics.junction.Logger;
 
 /** Slanted cascading elevator */
-public class ElevatorSubsystem extends SubsystemBase {
+public class ElevatorSubsystem extends SubsystemBase implements PowerManager.Consumer {
   // Constants
   // TODO find real values
   public static final double GEAR_RATIO = 12.5 / 1.0;
@@ -39,9 +46,13 @@ public class ElevatorSubsystem extends SubsystemBase {
   public static final double AMP_EXTENSION_METERS = 0.6;
 
   private final ElevatorIOInputsAutoLogged inputs = new ElevatorIOInputsAutoLogged();
+  private final LoopProfiler.Section periodicProfile = LoopProfiler.section("Subsystems/Elevator");
+  // Only the leader is measured, the follower carries the same current
+  private final MotorThermalModel thermalModel = new MotorThermalModel(1);
   private final ElevatorIO io;
 
   private final SysIdRoutine elevatorRoutine;
+  private final FeedforwardFitter elevatorFitter;
 
   // For dashboard
   private final Mechanism2d mech2d = new Mechanism2d(3.0, Units.feetToMeters(4.0));
@@ -55,6 +66,9 @@ public class ElevatorSubsystem extends SubsystemBase {
   /** Creates a new ElevatorSubsystem. */
   public ElevatorSubsystem(ElevatorIO io) {
     this.io = io;
+    // The sim IO can run on the real robot, and its fit would replace the real elevator's gains
+    elevatorFitter =
+        new FeedforwardFitter("Elevator", Gravity.CONSTANT, 0.01, !(io instanceof ElevatorIOSim));
 
     elevatorRoutine =
         new SysIdRoutine(
@@ -65,20 +79,34 @@ public class ElevatorSubsystem extends SubsystemBase {
                 // Log state with Phoenix SignalLogger class
                 (state) -> SignalLogger.writeString("state", state.toString())),
             new SysIdRoutine.Mechanism(
-                (Measure<Voltage> volts) -> io.setVoltage(volts.in(Volts)), null, this));
+                (Measure<Voltage> volts) -> io.setVoltage(volts.in(Volts)),
+                (log) ->
+                    elevatorFitter.addSample(
+                        inputs.elevatorAppliedVolts,
+                        inputs.elevatorPositionMeters,
+                        inputs.elevatorVelocityMetersPerSec),
+                this));
 
     root.append(carriage);
   }
 
   @Override
   public void periodic() {
+    periodicProfile.start();
     io.updateInputs(inputs);
     Logger.processInputs("Elevator", inputs);
+    if (inputs.elevatorCurrentAmps.length > 0 && inputs.elevatorTempCelsius.length > 0) {
+      thermalModel.update(0, inputs.elevatorCurrentAmps[0], inputs.elevatorTempCelsius[0]);
+    }
+    Logger.recordOutput("Elevator/Thermal Derate", thermalModel.getDerate());
+    TieredLogger.recordOutput(
+        Level.DEBUG, "Elevator/Predicted Temperatures", thermalModel.getPredictedTemperaturesC());
 
     carriage.setLength(inputs.elevatorPositionMeters);
-    Logger.recordOutput("Elevator/Mechanism2d", mech2d);
+    TieredLogger.recordOutput(Level.DEBUG, "Elevator/Mechanism2d", mech2d);
 
-    Logger.recordOutput("Elevator/Carriage Pose", getCarriagePose());
+    TieredLogger.recordOutput(Level.DEBUG, "Elevator/Carriage Pose", getCarriagePose());
+    periodicProfile.stop();
   }
 
   public Command setExtensionCmd(DoubleSupplier meters) {
@@ -99,6 +127,7 @@ public class ElevatorSubsystem extends SubsystemBase {
     return Commands.sequence(
         runCurrentZeroing(),
         this.runOnce(() -> SignalLogger.start()),
+        this.runOnce(elevatorFitter::reset),
         // Stop when we get close to max to avoid hitting hard stop
         elevatorRoutine
             .quasistatic(Direction.kForward)
@@ -121,6 +150,7 @@ public class ElevatorSubsystem extends SubsystemBase {
         elevatorRoutine
             .dynamic(Direction.kReverse)
             .until(() -> inputs.elevatorPositionMeters < 0.2),
+        this.runOnce(elevatorFitter::finish),
         this.runOnce(() -> SignalLogger.stop()));
   }
 
@@ -145,4 +175,24 @@ public class ElevatorSubsystem extends SubsystemBase {
   public double getExtensionMeters() {
     return inputs.elevatorPositionMeters;
   }
+
+  @Override
+  public double getSupplyCurrentAmps() {
+    // Only the leader's current is measured, the follower draws the same
+    double amps = 0.0;
+    for (double motorAmps : inputs.elevatorCurrentAmps) {
+      amps += PowerManager.estimateSupplyCurrent(inputs.elevatorAppliedVolts, motorAmps);
+    }
+    return 2.0 * amps;
+  }
+
+  @Override
+  public void setSupplyCurrentLimit(double amps) {
+    io.setSupplyCurrentLimit(amps);
+  }
+
+  @Override
+  public double getThermalDerate() {
+    return thermalModel.getDerate();
+  }
 }
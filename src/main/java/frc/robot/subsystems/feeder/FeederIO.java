@@ -21,4 +21,7 @@ public interface FeederIO {
   public void updateInputs(final FeederIOInputsAutoLogged inputs);
 
   public void setVoltage(final double volts);
+
+  /** Limits the supply current drawn by the feeder. */
+  public default void setSupplyCurrentLimit(final double amps) {}
 }
@@ -6,18 +6,29 @@ package frc.robot.subsystems.feeder;
 
 import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.configs.CurrentLimitsConfigs;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.VoltageOut;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.InvertedValue;
 import edu.wpi.first.wpilibj.DigitalInput;
+import frc.robot.utils.phoenix.CANBusBudget;
+import frc.robot.utils.phoenix.CANBusBudget.SignalClass;
+import frc.robot.utils.phoenix.ControlDeduplicator;
+import frc.robot.utils.phoenix.PhoenixSignalRegistry;
+import frc.robot.utils.power.VoltageCompensation;
 
 /** Feeder IO using a TalonFX. */
 public class FeederIOReal implements FeederIO {
+  public static final int FIRST_BEAMBREAK_CHANNEL = 0;
+  public static final int LAST_BEAMBREAK_CHANNEL = 1;
+
   private final TalonFX motor = new TalonFX(13);
+  private final ControlDeduplicator motorControl = new ControlDeduplicator(motor);
+  private final VoltageCompensation compensation = new VoltageCompensation("Feeder");
 
-  DigitalInput firstBeambreak = new DigitalInput(0);
-  DigitalInput lastBeambreak = new DigitalInput(1);
+  DigitalInput firstBeambreak = new DigitalInput(FIRST_BEAMBREAK_CHANNEL);
+  DigitalInput lastBeambreak = new DigitalInput(LAST_BEAMBREAK_CHANNEL);
 
   private final StatusSignal<Double> velocity = motor.getVelocity();
   private final StatusSignal<Double> voltage = motor.getMotorVoltage();
@@ -25,6 +36,8 @@ public class FeederIOReal implements FeederIO {
   private final StatusSignal<Double> temp = motor.getDeviceTemp();
 
   private final VoltageOut voltageOut = new VoltageOut(0.0).withEnableFOC(true);
+  // Kept to change the limit without reapplying the whole config
+  private final CurrentLimitsConfigs currentLimits;
 
   public FeederIOReal() {
     var config = new TalonFXConfiguration();
@@ -35,19 +48,22 @@ public class FeederIOReal implements FeederIO {
     config.CurrentLimits.StatorCurrentLimit = 20.0;
 
     motor.getConfigurator().apply(config);
+    currentLimits = config.CurrentLimits;
 
     BaseStatusSignal.setUpdateFrequencyForAll(50.0, velocity, voltage, current, temp);
     motor.optimizeBusUtilization();
+    PhoenixSignalRegistry.register(motor, velocity, voltage, current, temp);
+    CANBusBudget.register(motor, SignalClass.STATE, velocity);
+    CANBusBudget.register(motor, SignalClass.TELEMETRY, voltage, current);
+    CANBusBudget.register(motor, SignalClass.TEMPERATURE, temp);
   }
 
   @Override
   public void updateInputs(final FeederIOInputsAutoLogged inputs) {
-    BaseStatusSignal.refreshAll(velocity, voltage, current, temp);
-
-    inputs.feederVelocityRotationsPerSec = velocity.getValue();
-    inputs.feederAppliedVolts = voltage.getValue();
-    inputs.feederCurrentAmps = current.getValue();
-    inputs.feederTempC = temp.getValue();
+    inputs.feederVelocityRotationsPerSec = PhoenixSignalRegistry.getValue(velocity);
+    inputs.feederAppliedVolts = PhoenixSignalRegistry.getValue(voltage);
+    inputs.feederCurrentAmps = PhoenixSignalRegistry.getValue(current);
+    inputs.feederTempC = PhoenixSignalRegistry.getValue(temp);
 
     inputs.firstBeambreak = firstBeambreak.get();
     inputs.lastBeambreak = lastBeambreak.get();
@@ -55,6 +71,16 @@ public class FeederIOReal implements FeederIO {
 
   @Override
   public void setVoltage(final double volts) {
-    motor.setControl(voltageOut.withOutput(volts));
+    double limited = compensation.limit(volts);
+    motorControl.setControl(voltageOut.withOutput(limited), limited);
+  }
+
+  @Override
+  public void setSupplyCurrentLimit(final double amps) {
+    currentLimits.SupplyCurrentLimit = amps;
+    currentLimits.SupplyCurrentThreshold = amps;
+    currentLimits.SupplyTimeThreshold = 0.0;
+    currentLimits.SupplyCurrentLimitEnable = true;
+    motor.getConfigurator().apply(currentLimits, 0.0);
   }
 }
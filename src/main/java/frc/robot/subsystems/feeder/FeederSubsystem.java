@@ -6,12 +6,19 @@ package frc.robot.subsystems.feeder;
 
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.logging.LoopProfiler;
+import frc.robot.utils.logging.TieredLogger;
+import frc.robot.utils.logging.TieredLogger.Level;
+import frc.robot.utils.power.MotorThermalModel;
+import frc.robot.utils.power.PowerManager;
 import org.littletonrobotics.junction.Logger;
 
 /** Feeder motor for shooter and associated beambreaks for indexing */
-public class FeederSubsystem extends SubsystemBase {
+public class FeederSubsystem extends SubsystemBase implements PowerManager.Consumer {
   private final FeederIO io;
   private final FeederIOInputsAutoLogged inputs = new FeederIOInputsAutoLogged();
+  private final LoopProfiler.Section periodicProfile = LoopProfiler.section("Subsystems/Feeder");
+  private final MotorThermalModel thermalModel = new MotorThermalModel(1);
 
   /** Creates a new FeederSubsystem. */
   public FeederSubsystem(FeederIO io) {
@@ -20,8 +27,14 @@ public class FeederSubsystem extends SubsystemBase {
 
   @Override
   public void periodic() {
+    periodicProfile.start();
     io.updateInputs(inputs);
     Logger.processInputs("Feeder", inputs);
+    thermalModel.update(0, inputs.feederCurrentAmps, inputs.feederTempC);
+    Logger.recordOutput("Feeder/Thermal Derate", thermalModel.getDerate());
+    TieredLogger.recordOutput(
+        Level.DEBUG, "Feeder/Predicted Temperatures", thermalModel.getPredictedTemperaturesC());
+    periodicProfile.stop();
   }
 
   /** Run the feeder at a set voltage */
@@ -46,4 +59,19 @@ public class FeederSubsystem extends SubsystemBase {
   public boolean getFirstBeambreak() {
     return inputs.firstBeambreak;
   }
+
+  @Override
+  public double getSupplyCurrentAmps() {
+    return PowerManager.estimateSupplyCurrent(inputs.feederAppliedVolts, inputs.feederCurrentAmps);
+  }
+
+  @Override
+  public void setSupplyCurrentLimit(double amps) {
+    io.setSupplyCurrentLimit(amps);
+  }
+
+  @Override
+  public double getThermalDerate() {
+    return thermalModel.getDerate();
+  }
 }
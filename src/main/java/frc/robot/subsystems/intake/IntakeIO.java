@@ -28,4 +28,7 @@ public interface IntakeIO {
 
   /** Run the centering wheels at a specified voltage */
   public void setCenteringVoltage(final double volts);
+
+  /** Limits the supply current drawn by the intake and centering motors together. */
+  public default void setSupplyCurrentLimit(final double amps) {}
 }
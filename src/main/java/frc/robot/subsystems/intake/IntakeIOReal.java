@@ -6,15 +6,25 @@ package frc.robot.subsystems.intake;
 
 import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.configs.CurrentLimitsConfigs;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.VoltageOut;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.InvertedValue;
+import frc.robot.utils.phoenix.CANBusBudget;
+import frc.robot.utils.phoenix.CANBusBudget.SignalClass;
+import frc.robot.utils.phoenix.ControlDeduplicator;
+import frc.robot.utils.phoenix.PhoenixSignalRegistry;
+import frc.robot.utils.power.VoltageCompensation;
 
 /** Intake IO implementation for TalonFX motors. */
 public class IntakeIOReal implements IntakeIO {
   private final TalonFX intakeMotor = new TalonFX(14);
   private final TalonFX centeringMotor = new TalonFX(15);
+  private final ControlDeduplicator intakeControl = new ControlDeduplicator(intakeMotor);
+  private final ControlDeduplicator centeringControl = new ControlDeduplicator(centeringMotor);
+  private final VoltageCompensation intakeCompensation = new VoltageCompensation("Intake");
+  private final VoltageCompensation centeringCompensation = new VoltageCompensation("Centering");
 
   private final VoltageOut intakeVoltageOut = new VoltageOut(0.0).withEnableFOC(true);
   private final VoltageOut centeringVoltageOut = new VoltageOut(0.0).withEnableFOC(true);
@@ -29,6 +39,9 @@ public class IntakeIOReal implements IntakeIO {
   private final StatusSignal<Double> centeringAmperage = centeringMotor.getStatorCurrent();
   private final StatusSignal<Double> centeringTemp = centeringMotor.getDeviceTemp();
 
+  // Kept to change the limit without reapplying the whole config
+  private final CurrentLimitsConfigs currentLimits = new CurrentLimitsConfigs();
+
   public IntakeIOReal() {
     var intakeConfig = new TalonFXConfiguration();
     intakeConfig.MotorOutput.Inverted = InvertedValue.CounterClockwise_Positive;
@@ -50,32 +63,55 @@ public class IntakeIOReal implements IntakeIO {
         centeringTemp);
     intakeMotor.optimizeBusUtilization();
     centeringMotor.optimizeBusUtilization();
+    PhoenixSignalRegistry.register(
+        intakeMotor, intakeVelocity, intakeVoltage, intakeAmperage, intakeTemp);
+    PhoenixSignalRegistry.register(
+        centeringMotor, centeringVelocity, centeringVoltage, centeringAmperage, centeringTemp);
+    CANBusBudget.register(intakeMotor, SignalClass.STATE, intakeVelocity);
+    CANBusBudget.register(intakeMotor, SignalClass.TELEMETRY, intakeVoltage, intakeAmperage);
+    CANBusBudget.register(intakeMotor, SignalClass.TEMPERATURE, intakeTemp);
+    CANBusBudget.register(centeringMotor, SignalClass.STATE, centeringVelocity);
+    CANBusBudget.register(
+        centeringMotor, SignalClass.TELEMETRY, centeringVoltage, centeringAmperage);
+    CANBusBudget.register(centeringMotor, SignalClass.TEMPERATURE, centeringTemp);
   }
 
   /** Updates the set of loggable inputs. */
   @Override
   public void updateInputs(IntakeIOInputs inputs) {
-    BaseStatusSignal.refreshAll(intakeVelocity, intakeVoltage, intakeAmperage, intakeTemp);
-    inputs.intakeVelocityRotationsPerSecond = intakeVelocity.getValueAsDouble();
-    inputs.intakeAppliedVolts = intakeVoltage.getValueAsDouble();
-    inputs.intakeCurrentAmps = intakeAmperage.getValueAsDouble();
-    inputs.intakeTemperatureCelsius = intakeTemp.getValueAsDouble();
+    inputs.intakeVelocityRotationsPerSecond = PhoenixSignalRegistry.getValue(intakeVelocity);
+    inputs.intakeAppliedVolts = PhoenixSignalRegistry.getValue(intakeVoltage);
+    inputs.intakeCurrentAmps = PhoenixSignalRegistry.getValue(intakeAmperage);
+    inputs.intakeTemperatureCelsius = PhoenixSignalRegistry.getValue(intakeTemp);
 
-    inputs.centeringVelocityRotationsPerSecond = centeringVelocity.getValueAsDouble();
-    inputs.centeringAppliedVolts = centeringVoltage.getValueAsDouble();
-    inputs.centeringCurrentAmps = centeringAmperage.getValueAsDouble();
-    inputs.centeringTemperatureCelsius = centeringTemp.getValueAsDouble();
+    inputs.centeringVelocityRotationsPerSecond = PhoenixSignalRegistry.getValue(centeringVelocity);
+    inputs.centeringAppliedVolts = PhoenixSignalRegistry.getValue(centeringVoltage);
+    inputs.centeringCurrentAmps = PhoenixSignalRegistry.getValue(centeringAmperage);
+    inputs.centeringTemperatureCelsius = PhoenixSignalRegistry.getValue(centeringTemp);
   }
 
   /** Run the intake at a specified voltage */
   @Override
   public void setIntakeVoltage(final double volts) {
-    intakeMotor.setControl(intakeVoltageOut.withOutput(volts));
+    double limited = intakeCompensation.limit(volts);
+    intakeControl.setControl(intakeVoltageOut.withOutput(limited), limited);
   }
 
   /** Run the intake at a specified voltage */
   @Override
   public void setCenteringVoltage(final double volts) {
-    centeringMotor.setControl(centeringVoltageOut.withOutput(volts));
+    double limited = centeringCompensation.limit(volts);
+    centeringControl.setControl(centeringVoltageOut.withOutput(limited), limited);
+  }
+
+  @Override
+  public void setSupplyCurrentLimit(final double amps) {
+    // Shared evenly between the motors
+    currentLimits.SupplyCurrentLimit = amps / 2.0;
+    currentLimits.SupplyCurrentThreshold = amps / 2.0;
+    currentLimits.SupplyTimeThreshold = 0.0;
+    currentLimits.SupplyCurrentLimitEnable = true;
+    intakeMotor.getConfigurator().apply(currentLimits, 0.0);
+    centeringMotor.getConfigurator().apply(currentLimits, 0.0);
   }
 }
@@ -6,12 +6,20 @@ package frc.robot.subsystems.intake;
 
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.logging.LoopProfiler;
+import frc.robot.utils.logging.TieredLogger;
+import frc.robot.utils.logging.TieredLogger.Level;
+import frc.robot.utils.power.MotorThermalModel;
+import frc.robot.utils.power.PowerManager;
 import org.littletonrobotics.junction.Logger;
 
 /** 95 style utb intake */
-public class IntakeSubsystem extends SubsystemBase {
+public class IntakeSubsystem extends SubsystemBase implements PowerManager.Consumer {
   private final IntakeIO io;
   private final IntakeIOInputsAutoLogged inputs = new IntakeIOInputsAutoLogged();
+  private final LoopProfiler.Section periodicProfile = LoopProfiler.section("Subsystems/Intake");
+  // Intake and centering motors
+  private final MotorThermalModel thermalModel = new MotorThermalModel(2);
 
   /** Creates a new IntakeSubsystem. */
   public IntakeSubsystem(IntakeIO io) {
@@ -20,8 +28,15 @@ public class IntakeSubsystem extends SubsystemBase {
 
   @Override
   public void periodic() {
+    periodicProfile.start();
     io.updateInputs(inputs);
     Logger.processInputs("Intake", inputs);
+    thermalModel.update(0, inputs.intakeCurrentAmps, inputs.intakeTemperatureCelsius);
+    thermalModel.update(1, inputs.centeringCurrentAmps, inputs.centeringTemperatureCelsius);
+    Logger.recordOutput("Intake/Thermal Derate", thermalModel.getDerate());
+    TieredLogger.recordOutput(
+        Level.DEBUG, "Intake/Predicted Temperatures", thermalModel.getPredictedTemperaturesC());
+    periodicProfile.stop();
   }
 
   /** Run the intake and centering motors at the specified voltage */
@@ -32,4 +47,21 @@ public class IntakeSubsystem extends SubsystemBase {
           io.setCenteringVoltage(voltage);
         });
   }
+
+  @Override
+  public double getSupplyCurrentAmps() {
+    return PowerManager.estimateSupplyCurrent(inputs.intakeAppliedVolts, inputs.intakeCurrentAmps)
+        + PowerManager.estimateSupplyCurrent(
+            inputs.centeringAppliedVolts, inputs.centeringCurrentAmps);
+  }
+
+  @Override
+  public void setSupplyCurrentLimit(double amps) {
+    io.setSupplyCurrentLimit(amps);
+  }
+
+  @Override
+  public double getThermalDerate() {
+    return thermalModel.getDerate();
+  }
 }
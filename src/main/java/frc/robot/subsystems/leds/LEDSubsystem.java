@@ -12,6 +12,7 @@ import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.Command.InterruptionBehavior;
 import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.logging.LoopProfiler;
 import java.util.function.BooleanSupplier;
 import java.util.function.DoubleSupplier;
 import org.littletonrobotics.junction.Logger;
@@ -21,6 +22,7 @@ public class LEDSubsystem extends SubsystemBase {
 
   private final LEDIO io;
   private final LEDIOInputsAutoLogged inputs = new LEDIOInputsAutoLogged();
+  private final LoopProfiler.Section periodicProfile = LoopProfiler.section("Subsystems/LED");
 
   // Marks the start of rainbow or dash
   // Used to keep persistent state between loops
@@ -34,8 +36,10 @@ public class LEDSubsystem extends SubsystemBase {
 
   @Override
   public void periodic() {
+    periodicProfile.start();
     io.updateInputs(inputs);
     Logger.processInputs("LED", inputs);
+    periodicProfile.stop();
   }
 
   private void setIndex(int i, Color color) {
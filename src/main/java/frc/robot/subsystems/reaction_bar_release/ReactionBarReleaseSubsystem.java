@@ -7,12 +7,15 @@ package frc.robot.subsystems.reaction_bar_release;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.logging.LoopProfiler;
 import org.littletonrobotics.junction.Logger;
 
 public class ReactionBarReleaseSubsystem extends SubsystemBase {
   private final ReactionBarReleaseIO io;
   private final ReactionBarReleaseIOInputsAutoLogged inputs =
       new ReactionBarReleaseIOInputsAutoLogged();
+  private final LoopProfiler.Section periodicProfile =
+      LoopProfiler.section("Subsystems/Reaction Bar Release");
 
   /** Creates a new ReactionBarReleaseSubsystem. */
   public ReactionBarReleaseSubsystem(ReactionBarReleaseIO io) {
@@ -21,8 +24,10 @@ public class ReactionBarReleaseSubsystem extends SubsystemBase {
 
   @Override
   public void periodic() {
+    periodicProfile.start();
     io.updateInputs(inputs);
     Logger.processInputs("Reaction Bar Release", inputs);
+    periodicProfile.stop();
   }
 
   public Command setRotationCmd(final Rotation2d rotation) {
@@ -33,6 +33,9 @@ public interface ShooterIO {
 
   public void setFlywheelVelocity(final double left, final double right);
 
+  /** Limits the supply current drawn by both flywheels together. */
+  public default void setFlywheelSupplyCurrentLimit(final double amps) {}
+
   public void setPivotVoltage(final double voltage);
 
   public void setPivotSetpoint(final Rotation2d rotation);
@@ -2,6 +2,7 @@ package frc.robot.subsystems.shooter;
 
 import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.configs.CurrentLimitsConfigs;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.MotionMagicVoltage;
 import com.ctre.phoenix6.controls.VelocityVoltage;
@@ -10,11 +11,25 @@ import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.GravityTypeValue;
 import com.ctre.phoenix6.signals.InvertedValue;
 import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.utils.characterization.CharacterizationConfig;
+import frc.robot.utils.characterization.FeedforwardGains;
+import frc.robot.utils.phoenix.CANBusBudget;
+import frc.robot.utils.phoenix.CANBusBudget.SignalClass;
+import frc.robot.utils.phoenix.ControlDeduplicator;
+import frc.robot.utils.phoenix.PhoenixSignalRegistry;
+import frc.robot.utils.power.VoltageCompensation;
 
 public class ShooterIOReal implements ShooterIO {
   private final TalonFX pivotMotor = new TalonFX(10);
   private final TalonFX flywheelLeftMotor = new TalonFX(11);
   private final TalonFX flywheelRightMotor = new TalonFX(12);
+  private final ControlDeduplicator pivotControl = new ControlDeduplicator(pivotMotor);
+  private final ControlDeduplicator flywheelLeftControl =
+      new ControlDeduplicator(flywheelLeftMotor);
+  private final ControlDeduplicator flywheelRightControl =
+      new ControlDeduplicator(flywheelRightMotor);
+  private final VoltageCompensation leftCompensation = new VoltageCompensation("Flywheel Left");
+  private final VoltageCompensation rightCompensation = new VoltageCompensation("Flywheel Right");
 
   private final StatusSignal<Double> pivotVelocity = pivotMotor.getVelocity();
   private final StatusSignal<Double> pivotVoltage = pivotMotor.getMotorVoltage();
@@ -42,6 +57,8 @@ public class ShooterIOReal implements ShooterIO {
       new VelocityVoltage(0.0).withEnableFOC(true);
   private final VelocityVoltage flywheelRightVelocityVoltage =
       new VelocityVoltage(0.0).withEnableFOC(true);
+  // Kept to change the limit without reapplying the whole config
+  private final CurrentLimitsConfigs flywheelCurrentLimits;
 
   public ShooterIOReal() {
     var pivotConfig = new TalonFXConfiguration();
@@ -55,9 +72,12 @@ public class ShooterIOReal implements ShooterIO {
     pivotConfig.CurrentLimits.StatorCurrentLimit = 40.0;
 
     pivotConfig.Slot0.GravityType = GravityTypeValue.Arm_Cosine;
-    pivotConfig.Slot0.kG = 0.0; // TODO: Find using sysid or hand tuning
-    pivotConfig.Slot0.kA = 0.0;
-    pivotConfig.Slot0.kS = 0.0;
+    FeedforwardGains pivotGains =
+        CharacterizationConfig.getGains("Pivot", new FeedforwardGains(0.0, 0.0, 0.0, 0.0));
+    pivotConfig.Slot0.kG = pivotGains.kG();
+    pivotConfig.Slot0.kV = pivotGains.kV();
+    pivotConfig.Slot0.kA = pivotGains.kA();
+    pivotConfig.Slot0.kS = pivotGains.kS();
     pivotConfig.Slot0.kP = 0.0;
     pivotConfig.Slot0.kD = 0.0;
 
@@ -70,6 +90,11 @@ public class ShooterIOReal implements ShooterIO {
     BaseStatusSignal.setUpdateFrequencyForAll(
         50.0, pivotVelocity, pivotVoltage, pivotAmps, pivotTempC, pivotRotations);
     pivotMotor.optimizeBusUtilization();
+    PhoenixSignalRegistry.register(
+        pivotMotor, pivotRotations, pivotVelocity, pivotVoltage, pivotAmps, pivotTempC);
+    CANBusBudget.register(pivotMotor, SignalClass.AIM_STATE, pivotRotations, pivotVelocity);
+    CANBusBudget.register(pivotMotor, SignalClass.TELEMETRY, pivotVoltage, pivotAmps);
+    CANBusBudget.register(pivotMotor, SignalClass.TEMPERATURE, pivotTempC);
 
     var flywheelConfig = new TalonFXConfiguration();
 
@@ -82,15 +107,19 @@ public class ShooterIOReal implements ShooterIO {
     flywheelConfig.CurrentLimits.StatorCurrentLimit = 40.0;
 
     flywheelConfig.Slot0.GravityType = GravityTypeValue.Arm_Cosine;
-    flywheelConfig.Slot0.kG = 0.0; // TODO: Find using sysid or hand tuning
-    flywheelConfig.Slot0.kA = 0.0;
-    flywheelConfig.Slot0.kS = 0.0;
+    FeedforwardGains flywheelGains =
+        CharacterizationConfig.getGains("Flywheel", new FeedforwardGains(0.0, 0.0, 0.0, 0.0));
+    flywheelConfig.Slot0.kG = 0.0;
+    flywheelConfig.Slot0.kV = flywheelGains.kV();
+    flywheelConfig.Slot0.kA = flywheelGains.kA();
+    flywheelConfig.Slot0.kS = flywheelGains.kS();
     flywheelConfig.Slot0.kP = 0.0;
     flywheelConfig.Slot0.kD = 0.0;
 
     flywheelLeftMotor.getConfigurator().apply(flywheelConfig);
     flywheelConfig.MotorOutput.Inverted = InvertedValue.Clockwise_Positive;
     flywheelRightMotor.getConfigurator().apply(flywheelConfig);
+    flywheelCurrentLimits = flywheelConfig.CurrentLimits;
 
     BaseStatusSignal.setUpdateFrequencyForAll(
         50.0,
@@ -104,61 +133,82 @@ public class ShooterIOReal implements ShooterIO {
         flywheelRightTempC);
     flywheelLeftMotor.optimizeBusUtilization();
     flywheelRightMotor.optimizeBusUtilization();
-  }
-
-  @Override
-  public void updateInputs(ShooterIOInputsAutoLogged inputs) {
-    BaseStatusSignal.refreshAll(
-        pivotRotations,
-        pivotVelocity,
-        pivotVoltage,
-        pivotAmps,
-        pivotTempC,
+    PhoenixSignalRegistry.register(
+        flywheelLeftMotor,
         flywheelLeftVelocity,
         flywheelLeftVoltage,
         flywheelLeftAmps,
-        flywheelLeftTempC,
+        flywheelLeftTempC);
+    PhoenixSignalRegistry.register(
+        flywheelRightMotor,
         flywheelRightVelocity,
         flywheelRightVoltage,
         flywheelRightAmps,
         flywheelRightTempC);
+    CANBusBudget.register(flywheelLeftMotor, SignalClass.AIM_STATE, flywheelLeftVelocity);
+    CANBusBudget.register(
+        flywheelLeftMotor, SignalClass.TELEMETRY, flywheelLeftVoltage, flywheelLeftAmps);
+    CANBusBudget.register(flywheelLeftMotor, SignalClass.TEMPERATURE, flywheelLeftTempC);
+    CANBusBudget.register(flywheelRightMotor, SignalClass.AIM_STATE, flywheelRightVelocity);
+    CANBusBudget.register(
+        flywheelRightMotor, SignalClass.TELEMETRY, flywheelRightVoltage, flywheelRightAmps);
+    CANBusBudget.register(flywheelRightMotor, SignalClass.TEMPERATURE, flywheelRightTempC);
+  }
 
-    inputs.pivotRotation = Rotation2d.fromRotations(pivotRotations.getValue());
-    inputs.pivotVelocityRotationsPerSecond = pivotVelocity.getValue();
-    inputs.pivotVoltage = pivotVoltage.getValue();
-    inputs.pivotAmps = pivotAmps.getValue();
-    inputs.pivotTempC = pivotTempC.getValue();
-
-    inputs.flywheelLeftVelocityRotationsPerSecond = flywheelLeftVelocity.getValue();
-    inputs.flywheelLeftVoltage = flywheelLeftVoltage.getValue();
-    inputs.flywheelLeftAmps = flywheelLeftAmps.getValue();
-    inputs.flywheelLeftTempC = flywheelLeftTempC.getValue();
-
-    inputs.flywheelRightVelocityRotationsPerSecond = flywheelRightVelocity.getValue();
-    inputs.flywheelRightVoltage = flywheelRightVoltage.getValue();
-    inputs.flywheelRightAmps = flywheelRightAmps.getValue();
-    inputs.flywheelRightTempC = flywheelRightTempC.getValue();
+  @Override
+  public void updateInputs(ShooterIOInputsAutoLogged inputs) {
+    inputs.pivotRotation = Rotation2d.fromRotations(PhoenixSignalRegistry.getValue(pivotRotations));
+    inputs.pivotVelocityRotationsPerSecond = PhoenixSignalRegistry.getValue(pivotVelocity);
+    inputs.pivotVoltage = PhoenixSignalRegistry.getValue(pivotVoltage);
+    inputs.pivotAmps = PhoenixSignalRegistry.getValue(pivotAmps);
+    inputs.pivotTempC = PhoenixSignalRegistry.getValue(pivotTempC);
+
+    inputs.flywheelLeftVelocityRotationsPerSecond =
+        PhoenixSignalRegistry.getValue(flywheelLeftVelocity);
+    inputs.flywheelLeftVoltage = PhoenixSignalRegistry.getValue(flywheelLeftVoltage);
+    inputs.flywheelLeftAmps = PhoenixSignalRegistry.getValue(flywheelLeftAmps);
+    inputs.flywheelLeftTempC = PhoenixSignalRegistry.getValue(flywheelLeftTempC);
+
+    inputs.flywheelRightVelocityRotationsPerSecond =
+        PhoenixSignalRegistry.getValue(flywheelRightVelocity);
+    inputs.flywheelRightVoltage = PhoenixSignalRegistry.getValue(flywheelRightVoltage);
+    inputs.flywheelRightAmps = PhoenixSignalRegistry.getValue(flywheelRightAmps);
+    inputs.flywheelRightTempC = PhoenixSignalRegistry.getValue(flywheelRightTempC);
   }
 
   public void setPivotVoltage(final double voltage) {
-    pivotMotor.setControl(pivotVoltageOut.withOutput(voltage));
+    pivotControl.setControl(pivotVoltageOut.withOutput(voltage), voltage);
   }
 
   public void setPivotSetpoint(final Rotation2d rotation) {
-    pivotMotor.setControl(pivotMotionMagic.withPosition(rotation.getRotations()));
+    pivotControl.setControl(
+        pivotMotionMagic.withPosition(rotation.getRotations()), rotation.getRotations());
   }
 
   public void setFlywheelVoltage(final double left, final double right) {
-    flywheelLeftMotor.setControl(flywheelLeftVoltageOut.withOutput(left));
-    flywheelRightMotor.setControl(flywheelRightVoltageOut.withOutput(right));
+    double limitedLeft = leftCompensation.limit(left);
+    double limitedRight = rightCompensation.limit(right);
+    flywheelLeftControl.setControl(flywheelLeftVoltageOut.withOutput(limitedLeft), limitedLeft);
+    flywheelRightControl.setControl(flywheelRightVoltageOut.withOutput(limitedRight), limitedRight);
   }
 
   public void setFlywheelVelocity(final double left, final double right) {
-    flywheelLeftMotor.setControl(flywheelLeftVelocityVoltage.withVelocity(left));
-    flywheelRightMotor.setControl(flywheelRightVelocityVoltage.withVelocity(right));
+    flywheelLeftControl.setControl(flywheelLeftVelocityVoltage.withVelocity(left), left);
+    flywheelRightControl.setControl(flywheelRightVelocityVoltage.withVelocity(right), right);
   }
 
   public void resetPivotPostion(final Rotation2d rotation) {
     pivotMotor.setPosition(rotation.getRotations());
   }
+
+  @Override
+  public void setFlywheelSupplyCurrentLimit(final double amps) {
+    // Shared evenly between the motors
+    flywheelCurrentLimits.SupplyCurrentLimit = amps / 2.0;
+    flywheelCurrentLimits.SupplyCurrentThreshold = amps / 2.0;
+    flywheelCurrentLimits.SupplyTimeThreshold = 0.0;
+    flywheelCurrentLimits.SupplyCurrentLimitEnable = true;
+    flywheelLeftMotor.getConfigurator().apply(flywheelCurrentLimits, 0.0);
+    flywheelRightMotor.getConfigurator().apply(flywheelCurrentLimits, 0.0);
+  }
 }
@@ -4,7 +4,6 @@
 
 package frc.robot.subsystems.shooter;
 
-import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.ArmFeedforward;
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.controller.ProfiledPIDController;
@@ -13,84 +12,130 @@ import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.trajectory.TrapezoidProfile.Constraints;
 import edu.wpi.first.math.util.Units;
-import edu.wpi.first.wpilibj.simulation.DCMotorSim;
-import edu.wpi.first.wpilibj.simulation.SingleJointedArmSim;
+import frc.robot.utils.power.VoltageCompensation;
+import frc.robot.utils.sim.MotorMechanismSim;
+import frc.robot.utils.sim.PhysicsSim;
 
-/** Add your docs here. */
-public class ShooterIOSim implements ShooterIO {
-  SingleJointedArmSim pivotSim =
-      new SingleJointedArmSim(
+/** Shooter IO using motor mechanism sims stepped by PhysicsSim. */
+public class ShooterIOSim implements ShooterIO, PhysicsSim.Mechanism {
+  private static final double PIVOT_LENGTH_METERS = Units.feetToMeters(12);
+
+  MotorMechanismSim pivotSim =
+      new MotorMechanismSim(
           DCMotor.getKrakenX60Foc(1),
           ShooterSubystem.PIVOT_RATIO,
           0.85,
-          Units.feetToMeters(12),
           -1.0,
           2.0,
-          true,
-          0);
+          // Gravity on a uniform rod, as in SingleJointedArmSim
+          (angle) -> 1.5 * -9.8 * Math.cos(angle) / PIVOT_LENGTH_METERS);
 
-  DCMotorSim leftFlywheelSim =
-      new DCMotorSim(DCMotor.getKrakenX60Foc(1), ShooterSubystem.FLYWHEEL_RATIO, 0.001);
-  DCMotorSim rightFlywheelSim =
-      new DCMotorSim(DCMotor.getKrakenX60Foc(1), ShooterSubystem.FLYWHEEL_RATIO, 0.001);
+  private final VoltageCompensation leftCompensation = new VoltageCompensation("Flywheel Left");
+  private final VoltageCompensation rightCompensation = new VoltageCompensation("Flywheel Right");
+  MotorMechanismSim leftFlywheelSim =
+      new MotorMechanismSim(DCMotor.getKrakenX60Foc(1), ShooterSubystem.FLYWHEEL_RATIO, 0.001);
+  MotorMechanismSim rightFlywheelSim =
+      new MotorMechanismSim(DCMotor.getKrakenX60Foc(1), ShooterSubystem.FLYWHEEL_RATIO, 0.001);
 
   ProfiledPIDController pivotController =
-      new ProfiledPIDController(1.0, 0.0, 1.0, new Constraints(10.0, 10.0));
+      new ProfiledPIDController(
+          1.0, 0.0, 1.0, new Constraints(10.0, 10.0), PhysicsSim.CONTROL_PERIOD_SECONDS);
   ArmFeedforward pivotFF = new ArmFeedforward(0.0, 0.12, 0.8);
 
-  private final PIDController leftFlywheelController = new PIDController(0.5, 0.0, 0.0);
-  private final PIDController rightFlywheelController = new PIDController(0.5, 0.0, 0.0);
+  private final PIDController leftFlywheelController =
+      new PIDController(0.5, 0.0, 0.0, PhysicsSim.CONTROL_PERIOD_SECONDS);
+  private final PIDController rightFlywheelController =
+      new PIDController(0.5, 0.0, 0.0, PhysicsSim.CONTROL_PERIOD_SECONDS);
   SimpleMotorFeedforward flywheelFF = new SimpleMotorFeedforward(0.0, 0.0925);
 
+  // Closed loop setpoints, run by updateControl until a voltage is set
+  private boolean pivotClosedLoop = false;
+  private double pivotSetpointRad = 0.0;
+  private boolean flywheelClosedLoop = false;
+  private double leftSetpointRotationsPerSec = 0.0;
+  private double rightSetpointRotationsPerSec = 0.0;
+
+  public ShooterIOSim() {
+    PhysicsSim.register(this);
+  }
+
   @Override
   public void updateInputs(ShooterIOInputsAutoLogged inputs) {
-    leftFlywheelSim.update(0.020);
-    rightFlywheelSim.update(0.020);
-    pivotSim.update(0.020);
-
-    inputs.pivotRotation = Rotation2d.fromRadians(pivotSim.getAngleRads());
+    inputs.pivotRotation = Rotation2d.fromRadians(pivotSim.getPositionRad());
     inputs.pivotVelocityRotationsPerSecond =
         Units.rotationsToRadians(pivotSim.getVelocityRadPerSec());
-    inputs.pivotVoltage = 0.0;
+    inputs.pivotVoltage = pivotSim.getAppliedVolts();
     inputs.pivotAmps = pivotSim.getCurrentDrawAmps();
     inputs.pivotTempC = 0.0;
 
-    inputs.flywheelLeftVelocityRotationsPerSecond = leftFlywheelSim.getAngularVelocityRPM() / 60.0;
-    inputs.flywheelLeftVoltage = 0.0;
+    inputs.flywheelLeftVelocityRotationsPerSecond =
+        leftFlywheelSim.getVelocityRadPerSec() / (Math.PI * 2);
+    inputs.flywheelLeftVoltage = leftFlywheelSim.getAppliedVolts();
     inputs.flywheelLeftAmps = leftFlywheelSim.getCurrentDrawAmps();
     inputs.flywheelLeftTempC = 0.0;
 
     inputs.flywheelRightVelocityRotationsPerSecond =
-        rightFlywheelSim.getAngularVelocityRPM() / 60.0;
-    inputs.flywheelRightVoltage = 0.0;
+        rightFlywheelSim.getVelocityRadPerSec() / (Math.PI * 2);
+    inputs.flywheelRightVoltage = rightFlywheelSim.getAppliedVolts();
     inputs.flywheelRightAmps = rightFlywheelSim.getCurrentDrawAmps();
     inputs.flywheelRightTempC = 0.0;
   }
 
+  @Override
+  public void updateControl() {
+    if (pivotClosedLoop) {
+      pivotSim.setInputVoltage(
+          pivotController.calculate(pivotSim.getPositionRad(), pivotSetpointRad)
+              + pivotFF.calculate(
+                  pivotController.getSetpoint().position, pivotController.getSetpoint().velocity));
+    }
+    if (flywheelClosedLoop) {
+      leftFlywheelSim.setInputVoltage(
+          leftFlywheelController.calculate(
+                  leftFlywheelSim.getVelocityRadPerSec() / (Math.PI * 2),
+                  leftSetpointRotationsPerSec)
+              + flywheelFF.calculate(leftSetpointRotationsPerSec));
+      rightFlywheelSim.setInputVoltage(
+          rightFlywheelController.calculate(
+                  rightFlywheelSim.getVelocityRadPerSec() / (Math.PI * 2),
+                  rightSetpointRotationsPerSec)
+              + flywheelFF.calculate(rightSetpointRotationsPerSec));
+    }
+  }
+
+  @Override
+  public void step(double dtSeconds, boolean enabled) {
+    pivotSim.update(dtSeconds, enabled);
+    leftFlywheelSim.update(dtSeconds, enabled);
+    rightFlywheelSim.update(dtSeconds, enabled);
+  }
+
   public void setPivotVoltage(final double voltage) {
-    pivotSim.setInputVoltage(MathUtil.clamp(voltage, -12, 12));
+    pivotClosedLoop = false;
+    pivotSim.setInputVoltage(voltage);
   }
 
   public void setPivotSetpoint(final Rotation2d rotation) {
-    setPivotVoltage(
-        pivotController.calculate(pivotSim.getAngleRads(), rotation.getRadians())
-            + pivotFF.calculate(
-                pivotController.getSetpoint().position, pivotController.getSetpoint().velocity));
+    pivotClosedLoop = true;
+    pivotSetpointRad = rotation.getRadians();
   }
 
   public void setFlywheelVelocity(final double left, final double right) {
-    setFlywheelVoltage(
-        leftFlywheelController.calculate(
-                leftFlywheelSim.getAngularVelocityRadPerSec() / (Math.PI * 2), left)
-            + flywheelFF.calculate(left),
-        rightFlywheelController.calculate(
-                rightFlywheelSim.getAngularVelocityRadPerSec() / (Math.PI * 2), right)
-            + flywheelFF.calculate(right));
+    flywheelClosedLoop = true;
+    leftSetpointRotationsPerSec = left;
+    rightSetpointRotationsPerSec = right;
   }
 
   public void setFlywheelVoltage(final double left, final double right) {
-    leftFlywheelSim.setInputVoltage(MathUtil.clamp(left, -12, 12));
-    rightFlywheelSim.setInputVoltage(MathUtil.clamp(right, -12, 12));
+    flywheelClosedLoop = false;
+    leftFlywheelSim.setInputVoltage(leftCompensation.limit(left));
+    rightFlywheelSim.setInputVoltage(rightCompensation.limit(right));
+  }
+
+  @Override
+  public void setFlywheelSupplyCurrentLimit(final double amps) {
+    leftFlywheelSim.setSupplyCurrentLimit(amps / 2.0);
+    rightFlywheelSim.setSupplyCurrentLimit(amps / 2.0);
   }
 
   @Override
@@ -18,10 +18,17 @@ import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine.Direction;
+import frc.robot.utils.characterization.FeedforwardFitter;
+import frc.robot.utils.characterization.FeedforwardFitter.Gravity;
+import frc.robot.utils.logging.LoopProfiler;
+import frc.robot.utils.logging.TieredLogger;
+import frc.robot.utils.logging.TieredLogger.Level;
+import frc.robot.utils.power.MotorThermalModel;
+import frc.robot.utils.power.PowerManager;
 import java.util.function.DoubleSupplier;
 import org.littletonrobotics.junction.Logger;
 
-public class ShooterSubystem extends SubsystemBase {
+public class ShooterSubystem extends SubsystemBase implements PowerManager.Consumer {
   public static final double PIVOT_RATIO = (27.0 / 1.0) * (48.0 / 22.0);
   public static final double FLYWHEEL_RATIO = 18.0 / 24.0;
 
@@ -30,9 +37,17 @@ public class ShooterSubystem extends SubsystemBase {
 
   private final ShooterIO io;
   private final ShooterIOInputsAutoLogged inputs;
+  private final LoopProfiler.Section periodicProfile = LoopProfiler.section("Subsystems/Shooter");
+  // Left and right flywheels, the pivot holds position and doesn't heat much
+  private final MotorThermalModel thermalModel = new MotorThermalModel(2);
+  private final MotorThermalModel pivotThermalModel = new MotorThermalModel(1);
 
   private final SysIdRoutine flywheelRoutine;
   private final SysIdRoutine pivotRoutine;
+  private final FeedforwardFitter flywheelFitter =
+      new FeedforwardFitter("Flywheel", Gravity.NONE, 0.5);
+  private final FeedforwardFitter pivotFitter =
+      new FeedforwardFitter("Pivot", Gravity.COSINE, 0.01);
 
   private final Mechanism2d mech2d =
       new Mechanism2d(Units.feetToMeters(0.0), Units.feetToMeters(4.0));
@@ -55,7 +70,14 @@ public class ShooterSubystem extends SubsystemBase {
                 (state) -> SignalLogger.writeString("state", state.toString())),
             new SysIdRoutine.Mechanism(
                 (Measure<Voltage> volts) -> io.setFlywheelVoltage(volts.in(Volts), volts.in(Volts)),
-                null,
+                // Both flywheels get the same voltage, fit their average
+                (log) ->
+                    flywheelFitter.addSample(
+                        (inputs.flywheelLeftVoltage + inputs.flywheelRightVoltage) / 2.0,
+                        0.0,
+                        (inputs.flywheelLeftVelocityRotationsPerSecond
+                                + inputs.flywheelRightVelocityRotationsPerSecond)
+                            / 2.0),
                 this));
     pivotRoutine =
         new SysIdRoutine(
@@ -66,17 +88,37 @@ public class ShooterSubystem extends SubsystemBase {
                 // Log state with Phoenix SignalLogger class
                 (state) -> SignalLogger.writeString("state", state.toString())),
             new SysIdRoutine.Mechanism(
-                (Measure<Voltage> volts) -> io.setPivotVoltage(volts.in(Volts)), null, this));
+                (Measure<Voltage> volts) -> io.setPivotVoltage(volts.in(Volts)),
+                (log) ->
+                    pivotFitter.addSample(
+                        inputs.pivotVoltage,
+                        inputs.pivotRotation.getRotations(),
+                        inputs.pivotVelocityRotationsPerSecond),
+                this));
   }
 
   @Override
   public void periodic() {
+    periodicProfile.start();
     io.updateInputs(inputs);
     Logger.processInputs("Shooter", inputs);
+    thermalModel.update(0, inputs.flywheelLeftAmps, inputs.flywheelLeftTempC);
+    thermalModel.update(1, inputs.flywheelRightAmps, inputs.flywheelRightTempC);
+    Logger.recordOutput("Shooter/Thermal Derate", thermalModel.getDerate());
+    TieredLogger.recordOutput(
+        Level.DEBUG, "Shooter/Predicted Temperatures", thermalModel.getPredictedTemperaturesC());
+    // The pivot has no budget to derate, so its model only warns in the log
+    pivotThermalModel.update(0, inputs.pivotAmps, inputs.pivotTempC);
+    Logger.recordOutput("Shooter/Pivot Thermal Derate", pivotThermalModel.getDerate());
+    TieredLogger.recordOutput(
+        Level.DEBUG,
+        "Shooter/Predicted Pivot Temperature",
+        pivotThermalModel.getPredictedTemperaturesC()[0]);
 
     shooterLig.setAngle(inputs.pivotRotation.unaryMinus().minus(Rotation2d.fromDegrees(180.0)));
-    Logger.recordOutput("Shooter/Mechanism2d", mech2d);
-    Logger.recordOutput("Shooter/Root Pose", getMechanismPose());
+    TieredLogger.recordOutput(Level.DEBUG, "Shooter/Mechanism2d", mech2d);
+    TieredLogger.recordOutput(Level.DEBUG, "Shooter/Root Pose", getMechanismPose());
+    periodicProfile.stop();
   }
 
   public Pose3d getMechanismPose() {
@@ -118,6 +160,7 @@ public class ShooterSubystem extends SubsystemBase {
     return Commands.sequence(
         runPivotCurrentZeroing(),
         this.runOnce(() -> SignalLogger.start()),
+        this.runOnce(flywheelFitter::reset),
         flywheelRoutine.quasistatic(Direction.kForward),
         this.runOnce(() -> io.setFlywheelVoltage(0.0, 0.0)),
         Commands.waitSeconds(1.0),
@@ -128,12 +171,14 @@ public class ShooterSubystem extends SubsystemBase {
         this.runOnce(() -> io.setFlywheelVoltage(0.0, 0.0)),
         Commands.waitSeconds(1.0),
         flywheelRoutine.dynamic(Direction.kReverse),
+        this.runOnce(flywheelFitter::finish),
         this.runOnce(() -> SignalLogger.stop()));
   }
 
   public Command runPivotSysidCmd() {
     return Commands.sequence(
         this.runOnce(() -> SignalLogger.start()),
+        this.runOnce(pivotFitter::reset),
         // Stop when we get close to vertical so it falls back
         pivotRoutine
             .quasistatic(Direction.kForward)
@@ -156,6 +201,24 @@ public class ShooterSubystem extends SubsystemBase {
         pivotRoutine
             .dynamic(Direction.kReverse)
             .until(() -> inputs.pivotRotation.getDegrees() < 10.0),
+        this.runOnce(pivotFitter::finish),
         this.runOnce(() -> SignalLogger.stop()));
   }
+
+  @Override
+  public double getSupplyCurrentAmps() {
+    // The pivot is small and holds position, so only the flywheels have a budget
+    return PowerManager.estimateSupplyCurrent(inputs.flywheelLeftVoltage, inputs.flywheelLeftAmps)
+        + PowerManager.estimateSupplyCurrent(inputs.flywheelRightVoltage, inputs.flywheelRightAmps);
+  }
+
+  @Override
+  public void setSupplyCurrentLimit(double amps) {
+    io.setFlywheelSupplyCurrentLimit(amps);
+  }
+
+  @Override
+  public double getThermalDerate() {
+    return thermalModel.getDerate();
+  }
 }
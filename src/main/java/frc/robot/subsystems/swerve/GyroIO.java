@@ -22,7 +22,16 @@ public interface GyroIO {
     public boolean connected = false;
     public Rotation2d yawPosition = new Rotation2d();
     public Rotation2d[] odometryYawPositions = new Rotation2d[] {};
+    // FPGA timestamp of each odometry sample, in seconds
+    public double[] odometryTimestamps = new double[] {};
     public double yawVelocityRadPerSec = 0.0;
+    public Rotation2d pitchPosition = new Rotation2d();
+    public Rotation2d rollPosition = new Rotation2d();
+    // Robot relative, without gravity
+    public double accelXMetersPerSecSq = 0.0;
+    public double accelYMetersPerSecSq = 0.0;
+    public double[] odometryAccelXMetersPerSecSq = new double[] {};
+    public double[] odometryAccelYMetersPerSecSq = new double[] {};
   }
 
   public void updateInputs(final GyroIOInputs inputs);
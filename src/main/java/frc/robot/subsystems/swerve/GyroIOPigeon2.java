@@ -14,20 +14,34 @@
 package frc.robot.subsystems.swerve;
 
 import com.ctre.phoenix6.BaseStatusSignal;
-import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.Pigeon2Configuration;
 import com.ctre.phoenix6.hardware.Pigeon2;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.util.Units;
+import frc.robot.utils.phoenix.CANBusBudget;
+import frc.robot.utils.phoenix.CANBusBudget.SignalClass;
+import frc.robot.utils.phoenix.PhoenixSignalRegistry;
 import java.util.Queue;
 
 /** IO implementation for Pigeon2 */
 public class GyroIOPigeon2 implements GyroIO {
+  private static final double G = 9.80665;
+
   private final Pigeon2 pigeon = new Pigeon2(SwerveSubsystem.PIGEON_ID);
   private final StatusSignal<Double> yaw = pigeon.getYaw();
   private final Queue<Double> yawPositionQueue;
   private final StatusSignal<Double> yawVelocity = pigeon.getAngularVelocityZWorld();
+  private final StatusSignal<Double> pitch = pigeon.getPitch();
+  private final StatusSignal<Double> roll = pigeon.getRoll();
+  // Accelerations include gravity, in g
+  private final StatusSignal<Double> accelX = pigeon.getAccelerationX();
+  private final StatusSignal<Double> accelY = pigeon.getAccelerationY();
+  private final Queue<Double> accelXQueue;
+  private final Queue<Double> accelYQueue;
+  private final Queue<Double> timestampQueue;
+  private final StatusSignal<Double> gravityX = pigeon.getGravityVectorX();
+  private final StatusSignal<Double> gravityY = pigeon.getGravityVectorY();
 
   public GyroIOPigeon2() {
     var config = new Pigeon2Configuration();
@@ -35,21 +49,60 @@ public class GyroIOPigeon2 implements GyroIO {
     pigeon.getConfigurator().setYaw(0.0);
     yaw.setUpdateFrequency(Module.ODOMETRY_FREQUENCY_HZ);
     yawVelocity.setUpdateFrequency(100.0);
+    accelX.setUpdateFrequency(Module.ODOMETRY_FREQUENCY_HZ);
+    accelY.setUpdateFrequency(Module.ODOMETRY_FREQUENCY_HZ);
+    BaseStatusSignal.setUpdateFrequencyForAll(50.0, pitch, roll, gravityX, gravityY);
     pigeon.optimizeBusUtilization();
+    // Yaw and accelerations are refreshed by the odometry thread, so they are read from its queues
+    PhoenixSignalRegistry.register(pigeon, yawVelocity, pitch, roll, gravityX, gravityY);
+    CANBusBudget.register(pigeon, SignalClass.ODOMETRY, yaw, accelX, accelY);
+    CANBusBudget.register(pigeon, SignalClass.STATE, yawVelocity, pitch, roll, gravityX, gravityY);
     yawPositionQueue = PhoenixOdometryThread.getInstance().registerSignal(pigeon, pigeon.getYaw());
+    accelXQueue =
+        PhoenixOdometryThread.getInstance().registerSignal(pigeon, pigeon.getAccelerationX());
+    accelYQueue =
+        PhoenixOdometryThread.getInstance().registerSignal(pigeon, pigeon.getAccelerationY());
+    timestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue();
   }
 
   @Override
   public void updateInputs(GyroIOInputs inputs) {
-    inputs.connected = BaseStatusSignal.refreshAll(yaw, yawVelocity).equals(StatusCode.OK);
-    inputs.yawPosition = Rotation2d.fromDegrees(yaw.getValueAsDouble());
-    inputs.yawVelocityRadPerSec = Units.degreesToRadians(yawVelocity.getValueAsDouble());
+    inputs.connected = PhoenixSignalRegistry.isAllGood(yawVelocity, pitch);
+    inputs.yawVelocityRadPerSec =
+        Units.degreesToRadians(PhoenixSignalRegistry.getValue(yawVelocity));
+
+    inputs.pitchPosition = Rotation2d.fromDegrees(PhoenixSignalRegistry.getValue(pitch));
+    inputs.rollPosition = Rotation2d.fromDegrees(PhoenixSignalRegistry.getValue(roll));
+    // Gravity changes slowly, so its latest value is removed from every acceleration sample
+    double gravityXGs = PhoenixSignalRegistry.getValue(gravityX);
+    double gravityYGs = PhoenixSignalRegistry.getValue(gravityY);
 
+    inputs.odometryTimestamps = timestampQueue.stream().mapToDouble(Double::doubleValue).toArray();
+    timestampQueue.clear();
     inputs.odometryYawPositions =
         yawPositionQueue.stream()
             .map((Double value) -> Rotation2d.fromDegrees(value))
             .toArray(Rotation2d[]::new);
     yawPositionQueue.clear();
+    inputs.odometryAccelXMetersPerSecSq =
+        accelXQueue.stream().mapToDouble((Double value) -> (value - gravityXGs) * G).toArray();
+    accelXQueue.clear();
+    inputs.odometryAccelYMetersPerSecSq =
+        accelYQueue.stream().mapToDouble((Double value) -> (value - gravityYGs) * G).toArray();
+    accelYQueue.clear();
+
+    // Latest odometry sample, holding the last one through a loop without samples
+    if (inputs.odometryYawPositions.length > 0) {
+      inputs.yawPosition = inputs.odometryYawPositions[inputs.odometryYawPositions.length - 1];
+    }
+    if (inputs.odometryAccelXMetersPerSecSq.length > 0) {
+      inputs.accelXMetersPerSecSq =
+          inputs.odometryAccelXMetersPerSecSq[inputs.odometryAccelXMetersPerSecSq.length - 1];
+    }
+    if (inputs.odometryAccelYMetersPerSecSq.length > 0) {
+      inputs.accelYMetersPerSecSq =
+          inputs.odometryAccelYMetersPerSecSq[inputs.odometryAccelYMetersPerSecSq.length - 1];
+    }
   }
 
   @Override
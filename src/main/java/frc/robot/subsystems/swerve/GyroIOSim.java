@@ -0,0 +1,36 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.swerve;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.Timer;
+
+/** Gyro IO that reads the yaw and acceleration of a SwerveDriveSim. The sim field is flat. */
+public class GyroIOSim implements GyroIO {
+  private final SwerveDriveSim driveSim;
+  private double yawOffsetRad = 0.0;
+
+  public GyroIOSim(SwerveDriveSim driveSim) {
+    this.driveSim = driveSim;
+  }
+
+  @Override
+  public void updateInputs(GyroIOInputs inputs) {
+    inputs.connected = true;
+    inputs.yawPosition = new Rotation2d(driveSim.getGyroYawRad() + yawOffsetRad);
+    inputs.yawVelocityRadPerSec = driveSim.getYawRateRadPerSec();
+    inputs.odometryYawPositions = new Rotation2d[] {inputs.yawPosition};
+    inputs.odometryTimestamps = new double[] {Timer.getFPGATimestamp()};
+    inputs.accelXMetersPerSecSq = driveSim.getAccelXMetersPerSecSq();
+    inputs.accelYMetersPerSecSq = driveSim.getAccelYMetersPerSecSq();
+    inputs.odometryAccelXMetersPerSecSq = new double[] {inputs.accelXMetersPerSecSq};
+    inputs.odometryAccelYMetersPerSecSq = new double[] {inputs.accelYMetersPerSecSq};
+  }
+
+  @Override
+  public void setYaw(Rotation2d yaw) {
+    yawOffsetRad = yaw.getRadians() - driveSim.getGyroYawRad();
+  }
+}
@@ -17,6 +17,7 @@ import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.util.Units;
+import frc.robot.utils.power.PowerManager;
 import org.littletonrobotics.junction.Logger;
 
 public class Module {
@@ -25,7 +26,9 @@ public class Module {
       String prefix, int driveID, int turnID, int cancoderID, Rotation2d cancoderOffset) {}
 
   // Global constants
-  public static final double WHEEL_RADIUS = Units.inchesToMeters(2.0);
+  public static final String WHEEL_RADIUS_CONFIG_KEY = "Wheel Radius (m)";
+  // The real IO replaces this with the radius measured by the wheel radius characterization
+  public static final double NOMINAL_WHEEL_RADIUS = Units.inchesToMeters(2.0);
   public static final double ODOMETRY_FREQUENCY_HZ = 250.0;
 
   // Gear ratios for SDS MK4i L3.5, adjust as necessary
@@ -36,15 +39,23 @@ public class Module {
 
   public static final double DRIVE_STATOR_CURRENT_LIMIT = 50.0; // TODO bump as needed
   public static final double TURN_STATOR_CURRENT_LIMIT = 40.0;
+  // Drive limit while the wheel is slipping, with traction control on
+  public static final double SLIP_STATOR_CURRENT_LIMIT = 35.0;
 
   private final ModuleIO io;
   private final ModuleIOInputsAutoLogged inputs = new ModuleIOInputsAutoLogged();
+  // Built once instead of formatting a new string every loop
+  private final String logKey;
+  private final double wheelRadius;
 
   private double lastPositionMeters = 0.0; // Used for delta calculation
+  private double driveCurrentLimit = DRIVE_STATOR_CURRENT_LIMIT;
   private SwerveModulePosition[] positionDeltas = new SwerveModulePosition[] {};
 
   public Module(final ModuleIO io) {
     this.io = io;
+    logKey = String.format("Swerve/%s Module", io.getModuleName());
+    wheelRadius = io.getWheelRadiusMeters();
   }
 
   /**
@@ -56,18 +67,35 @@ public class Module {
   }
 
   public void periodic() {
-    Logger.processInputs(String.format("Swerve/%s Module", io.getModuleName()), inputs);
+    Logger.processInputs(logKey, inputs);
 
     // Calculate position deltas for odometry
-    final int deltaCount =
-        Math.min(inputs.odometryDrivePositionsMeters.length, inputs.odometryTurnPositions.length);
-    positionDeltas = new SwerveModulePosition[deltaCount];
+    positionDeltas =
+        computePositionDeltas(
+            lastPositionMeters, inputs.odometryDrivePositionsMeters, inputs.odometryTurnPositions);
+    if (positionDeltas.length > 0) {
+      lastPositionMeters = inputs.odometryDrivePositionsMeters[positionDeltas.length - 1];
+    }
+  }
+
+  /**
+   * Converts absolute odometry samples into position deltas.
+   *
+   * @param lastPositionMeters The drive position of the last sample from the previous cycle
+   * @param drivePositionsMeters The drive positions received this cycle
+   * @param turnPositions The turn positions received this cycle
+   * @return The position deltas, one per sample
+   */
+  public static SwerveModulePosition[] computePositionDeltas(
+      double lastPositionMeters, double[] drivePositionsMeters, Rotation2d[] turnPositions) {
+    final int deltaCount = Math.min(drivePositionsMeters.length, turnPositions.length);
+    final SwerveModulePosition[] deltas = new SwerveModulePosition[deltaCount];
     for (int i = 0; i < deltaCount; i++) {
-      final double positionMeters = inputs.odometryDrivePositionsMeters[i];
-      final Rotation2d angle = inputs.odometryTurnPositions[i];
-      positionDeltas[i] = new SwerveModulePosition(positionMeters - lastPositionMeters, angle);
+      final double positionMeters = drivePositionsMeters[i];
+      deltas[i] = new SwerveModulePosition(positionMeters - lastPositionMeters, turnPositions[i]);
       lastPositionMeters = positionMeters;
     }
+    return deltas;
   }
 
   /** Runs the module closed loop with the specified setpoint state. Returns the optimized state. */
@@ -102,6 +130,19 @@ public class Module {
     io.setDriveVoltage(0.0);
   }
 
+  /** Sets the drive stator current limit, only sending it to the motor when it changes. */
+  public void setDriveCurrentLimit(double amps) {
+    if (amps != driveCurrentLimit) {
+      driveCurrentLimit = amps;
+      io.setDriveCurrentLimit(amps);
+    }
+  }
+
+  /** Sets the drive supply current limit. */
+  public void setDriveSupplyCurrentLimit(double amps) {
+    io.setDriveSupplyCurrentLimit(amps);
+  }
+
   /** Returns the current turn angle of the module. */
   public Rotation2d getAngle() {
     return inputs.turnPosition;
@@ -117,6 +158,11 @@ public class Module {
     return inputs.driveVelocityMetersPerSec;
   }
 
+  /** Returns the drive position in radians of wheel rotation. */
+  public double getWheelRadiusCharacterizationPosition() {
+    return inputs.drivePositionMeters / wheelRadius;
+  }
+
   /** Returns the module position (turn angle and drive position). */
   public SwerveModulePosition getPosition() {
     return new SwerveModulePosition(getPositionMeters(), getAngle());
@@ -136,4 +182,48 @@ public class Module {
   public double getCharacterizationVelocity() {
     return inputs.driveVelocityMetersPerSec;
   }
+
+  /** Returns the voltage applied to the drive motor. */
+  public double getDriveAppliedVolts() {
+    return inputs.driveAppliedVolts;
+  }
+
+  /** Returns the voltage applied to the turn motor. */
+  public double getTurnAppliedVolts() {
+    return inputs.turnAppliedVolts;
+  }
+
+  /** Returns the turn velocity in radians/sec. */
+  public double getTurnVelocityRadPerSec() {
+    return inputs.turnVelocityRadPerSec;
+  }
+
+  /** Returns the estimated current the drive motor draws from the battery. */
+  public double getDriveSupplyCurrentAmps() {
+    double amps = 0.0;
+    for (double statorAmps : inputs.driveCurrentAmps) {
+      amps += PowerManager.estimateSupplyCurrent(inputs.driveAppliedVolts, statorAmps);
+    }
+    return amps;
+  }
+
+  /** Returns the drive motor's stator current. */
+  public double getDriveCurrentAmps() {
+    return inputs.driveCurrentAmps.length > 0 ? inputs.driveCurrentAmps[0] : 0.0;
+  }
+
+  /** Returns the drive motor's temperature, or 0 if it isn't measured. */
+  public double getDriveTempCelsius() {
+    return inputs.driveTempCelsius.length > 0 ? inputs.driveTempCelsius[0] : 0.0;
+  }
+
+  /** Returns the turn motor's stator current. */
+  public double getTurnCurrentAmps() {
+    return inputs.turnCurrentAmps.length > 0 ? inputs.turnCurrentAmps[0] : 0.0;
+  }
+
+  /** Returns the turn motor's temperature, or 0 if it isn't measured. */
+  public double getTurnTempCelsius() {
+    return inputs.turnTempCelsius.length > 0 ? inputs.turnTempCelsius[0] : 0.0;
+  }
 }
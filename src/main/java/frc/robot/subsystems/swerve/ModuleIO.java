@@ -23,12 +23,14 @@ public interface ModuleIO {
     public double driveVelocityMetersPerSec = 0.0;
     public double driveAppliedVolts = 0.0;
     public double[] driveCurrentAmps = new double[] {};
+    public double[] driveTempCelsius = new double[] {};
 
     public Rotation2d turnAbsolutePosition = new Rotation2d();
     public Rotation2d turnPosition = new Rotation2d();
     public double turnVelocityRadPerSec = 0.0;
     public double turnAppliedVolts = 0.0;
     public double[] turnCurrentAmps = new double[] {};
+    public double[] turnTempCelsius = new double[] {};
 
     public double[] odometryDrivePositionsMeters = new double[] {};
     public Rotation2d[] odometryTurnPositions = new Rotation2d[] {};
@@ -49,6 +51,17 @@ public interface ModuleIO {
   /** Use onboard PIDF to run the turn motor to the specified rotation */
   public void setTurnSetpoint(final Rotation2d rotation);
 
+  /** Sets the drive motor's stator current limit. */
+  public default void setDriveCurrentLimit(final double amps) {}
+
+  /** Sets the drive motor's supply current limit. */
+  public default void setDriveSupplyCurrentLimit(final double amps) {}
+
+  /** Returns the wheel radius the drive position is converted with, in meters. */
+  public default double getWheelRadiusMeters() {
+    return Module.NOMINAL_WHEEL_RADIUS;
+  }
+
   /** Gets the name of the swerve module for logging purposes, should be constant per-module. */
   public String getModuleName();
 }
@@ -16,6 +16,7 @@ package frc.robot.subsystems.swerve;
 import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.CANcoderConfiguration;
+import com.ctre.phoenix6.configs.CurrentLimitsConfigs;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.MotionMagicVelocityVoltage;
 import com.ctre.phoenix6.controls.MotionMagicVoltage;
@@ -28,6 +29,12 @@ import com.ctre.phoenix6.signals.NeutralModeValue;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.util.Units;
 import frc.robot.subsystems.swerve.Module.ModuleConstants;
+import frc.robot.utils.characterization.CharacterizationConfig;
+import frc.robot.utils.characterization.FeedforwardGains;
+import frc.robot.utils.phoenix.CANBusBudget;
+import frc.robot.utils.phoenix.CANBusBudget.SignalClass;
+import frc.robot.utils.phoenix.ControlDeduplicator;
+import frc.robot.utils.phoenix.PhoenixSignalRegistry;
 import java.util.Queue;
 
 /**
@@ -47,6 +54,8 @@ public class ModuleIOReal implements ModuleIO {
   private static final boolean IS_TURN_MOTOR_INVERTED = false;
 
   private final String name;
+  // Read at startup since the drive motor's sensor to mechanism ratio depends on it
+  private final double wheelRadius;
 
   // Hardware
   private final TalonFX driveTalon;
@@ -59,6 +68,7 @@ public class ModuleIOReal implements ModuleIO {
   private final StatusSignal<Double> driveVelocity;
   private final StatusSignal<Double> driveAppliedVolts;
   private final StatusSignal<Double> driveCurrent;
+  private final StatusSignal<Double> driveTemp;
 
   private final StatusSignal<Double> turnAbsolutePosition;
   private final StatusSignal<Double> turnPosition;
@@ -66,24 +76,34 @@ public class ModuleIOReal implements ModuleIO {
   private final StatusSignal<Double> turnVelocity;
   private final StatusSignal<Double> turnAppliedVolts;
   private final StatusSignal<Double> turnCurrent;
+  private final StatusSignal<Double> turnTemp;
 
   // Control modes
+  private final ControlDeduplicator driveControl;
+  private final ControlDeduplicator turnControl;
   private final VoltageOut driveVoltage = new VoltageOut(0.0).withEnableFOC(true);
   private final VoltageOut turnVoltage = new VoltageOut(0.0).withEnableFOC(true);
   private final MotionMagicVelocityVoltage drivePIDF =
       new MotionMagicVelocityVoltage(0.0).withEnableFOC(true);
   private final MotionMagicVoltage turnPID = new MotionMagicVoltage(0.0).withEnableFOC(true);
+  // Kept to change the limit without reapplying the whole config
+  private final CurrentLimitsConfigs driveCurrentLimits;
 
   public ModuleIOReal(ModuleConstants constants) {
     name = constants.prefix();
+    wheelRadius =
+        CharacterizationConfig.getDouble(
+            Module.WHEEL_RADIUS_CONFIG_KEY, Module.NOMINAL_WHEEL_RADIUS);
 
     driveTalon = new TalonFX(constants.driveID());
     turnTalon = new TalonFX(constants.turnID());
     cancoder = new CANcoder(constants.cancoderID());
+    driveControl = new ControlDeduplicator(driveTalon);
+    turnControl = new ControlDeduplicator(turnTalon);
 
     var driveConfig = new TalonFXConfiguration();
     // Current limits
-    // TODO: Do we want to limit supply current?
+    // Supply current is limited live, from the PowerManager's budget
     driveConfig.CurrentLimits.StatorCurrentLimit = Module.DRIVE_STATOR_CURRENT_LIMIT;
     driveConfig.CurrentLimits.StatorCurrentLimitEnable = true;
     // Inverts
@@ -92,17 +112,18 @@ public class ModuleIOReal implements ModuleIO {
     // Sensor
     // Meters per second
     driveConfig.Feedback.SensorToMechanismRatio =
-        (Module.DRIVE_GEAR_RATIO) * (1.0 / (Module.WHEEL_RADIUS * 2 * Math.PI));
-    // Controls Gains
-    driveConfig.Slot0.kV = 2.5;
-    // (5800.0 * (Module.DRIVE_GEAR_RATIO) * (1.0 / (Module.WHEEL_RADIUS * 2 * Math.PI)))
-    //     / 12.0; // Hypothetical based on free speed
-    driveConfig.Slot0.kA = 0.0; // TODO: Find using sysid or hand tuning
-    driveConfig.Slot0.kS = 0.0;
+        (Module.DRIVE_GEAR_RATIO) * (1.0 / (wheelRadius * 2 * Math.PI));
+    // Controls Gains, feedforward from the drive characterization
+    FeedforwardGains driveGains =
+        CharacterizationConfig.getGains("Drive", new FeedforwardGains(0.0, 2.5, 0.0, 0.0));
+    driveConfig.Slot0.kV = driveGains.kV();
+    driveConfig.Slot0.kA = driveGains.kA();
+    driveConfig.Slot0.kS = driveGains.kS();
     driveConfig.Slot0.kP = 0.25; // Guess
     driveConfig.Slot0.kD = 0.0;
 
     driveTalon.getConfigurator().apply(driveConfig);
+    driveCurrentLimits = driveConfig.CurrentLimits;
 
     var turnConfig = new TalonFXConfiguration();
     // Current limits
@@ -121,18 +142,12 @@ public class ModuleIOReal implements ModuleIO {
     turnConfig.Feedback.SensorToMechanismRatio = 1.0;
     turnConfig.Feedback.FeedbackRotorOffset =
         0.0; // Is this correct? Cancoder config should handle it
-    // Controls Gains
-    turnConfig.Slot0.kV = 0.0;
-    // (5800.0 / Module.TURN_GEAR_RATIO)
-    //     / 12.0; // Free speed over voltage, should find empirically
-    turnConfig.Slot0.kA = 0.0;
-    // Module.TURN_GEAR_RATIO
-    //     * (9.37 / 483.0)
-    //     / (0.004 * (12.0 / 483.0)); // Based on motor dynamics math, should find in real life
-    // gearing * Kt (torque per amp) / (intertia * resistance (nominal voltage / stall current))
-    // Yeah its messy and should be found using sysid later but its worth trying as a first guess
-    // If this works we can use a similar technique on future mechanisms
-    turnConfig.Slot0.kS = 0.0; // TODO: Find empirically
+    // Controls Gains, feedforward from the steer characterization
+    FeedforwardGains turnGains =
+        CharacterizationConfig.getGains("Steer", new FeedforwardGains(0.0, 0.0, 0.0, 0.0));
+    turnConfig.Slot0.kV = turnGains.kV();
+    turnConfig.Slot0.kA = turnGains.kA();
+    turnConfig.Slot0.kS = turnGains.kS();
     turnConfig.Slot0.kP = 50.0;
     turnConfig.Slot0.kD = 0.0;
     turnConfig.ClosedLoopGeneral.ContinuousWrap = true;
@@ -149,6 +164,7 @@ public class ModuleIOReal implements ModuleIO {
     driveVelocity = driveTalon.getVelocity();
     driveAppliedVolts = driveTalon.getMotorVoltage();
     driveCurrent = driveTalon.getStatorCurrent();
+    driveTemp = driveTalon.getDeviceTemp();
 
     turnAbsolutePosition = cancoder.getAbsolutePosition();
     turnPosition = turnTalon.getPosition();
@@ -157,6 +173,7 @@ public class ModuleIOReal implements ModuleIO {
     turnVelocity = turnTalon.getVelocity();
     turnAppliedVolts = turnTalon.getMotorVoltage();
     turnCurrent = turnTalon.getStatorCurrent();
+    turnTemp = turnTalon.getDeviceTemp();
 
     BaseStatusSignal.setUpdateFrequencyForAll(
         Module.ODOMETRY_FREQUENCY_HZ, drivePosition, turnPosition);
@@ -169,63 +186,100 @@ public class ModuleIOReal implements ModuleIO {
         turnVelocity,
         turnAppliedVolts,
         turnCurrent);
+    BaseStatusSignal.setUpdateFrequencyForAll(4.0, driveTemp, turnTemp);
     driveTalon.optimizeBusUtilization();
     turnTalon.optimizeBusUtilization();
     cancoder.optimizeBusUtilization();
+    // Positions are refreshed by the odometry thread, so they are read from its queues instead
+    PhoenixSignalRegistry.register(
+        driveTalon, driveVelocity, driveAppliedVolts, driveCurrent, driveTemp);
+    PhoenixSignalRegistry.register(
+        turnTalon, turnVelocity, turnAppliedVolts, turnCurrent, turnTemp);
+    PhoenixSignalRegistry.register(cancoder, turnAbsolutePosition);
+    CANBusBudget.register(driveTalon, SignalClass.ODOMETRY, drivePosition);
+    CANBusBudget.register(driveTalon, SignalClass.STATE, driveVelocity);
+    CANBusBudget.register(driveTalon, SignalClass.TELEMETRY, driveAppliedVolts, driveCurrent);
+    CANBusBudget.register(driveTalon, SignalClass.TEMPERATURE, driveTemp);
+    CANBusBudget.register(turnTalon, SignalClass.ODOMETRY, turnPosition);
+    CANBusBudget.register(turnTalon, SignalClass.STATE, turnVelocity);
+    CANBusBudget.register(turnTalon, SignalClass.TELEMETRY, turnAppliedVolts, turnCurrent);
+    CANBusBudget.register(turnTalon, SignalClass.TEMPERATURE, turnTemp);
+    CANBusBudget.register(cancoder, SignalClass.STATE, turnAbsolutePosition);
   }
 
   @Override
   public void updateInputs(ModuleIOInputs inputs) {
-    BaseStatusSignal.refreshAll(
-        drivePosition,
-        driveVelocity,
-        driveAppliedVolts,
-        driveCurrent,
-        turnAbsolutePosition,
-        turnPosition,
-        turnVelocity,
-        turnAppliedVolts,
-        turnCurrent);
+    inputs.driveVelocityMetersPerSec = PhoenixSignalRegistry.getValue(driveVelocity);
+    inputs.driveAppliedVolts = PhoenixSignalRegistry.getValue(driveAppliedVolts);
+    inputs.driveCurrentAmps = new double[] {PhoenixSignalRegistry.getValue(driveCurrent)};
+    inputs.driveTempCelsius = new double[] {PhoenixSignalRegistry.getValue(driveTemp)};
 
-    inputs.drivePositionMeters = drivePosition.getValueAsDouble();
-    inputs.driveVelocityMetersPerSec = driveVelocity.getValueAsDouble();
-    inputs.driveAppliedVolts = driveAppliedVolts.getValueAsDouble();
-    inputs.driveCurrentAmps = new double[] {driveCurrent.getValueAsDouble()};
-
-    inputs.turnAbsolutePosition = Rotation2d.fromRotations(turnAbsolutePosition.getValueAsDouble());
-    inputs.turnPosition = Rotation2d.fromRotations(turnPosition.getValueAsDouble());
-    inputs.turnVelocityRadPerSec = Units.rotationsToRadians(turnVelocity.getValueAsDouble());
-    inputs.turnAppliedVolts = turnAppliedVolts.getValueAsDouble();
-    inputs.turnCurrentAmps = new double[] {turnCurrent.getValueAsDouble()};
+    inputs.turnAbsolutePosition =
+        Rotation2d.fromRotations(PhoenixSignalRegistry.getValue(turnAbsolutePosition));
+    inputs.turnVelocityRadPerSec =
+        Units.rotationsToRadians(PhoenixSignalRegistry.getValue(turnVelocity));
+    inputs.turnAppliedVolts = PhoenixSignalRegistry.getValue(turnAppliedVolts);
+    inputs.turnCurrentAmps = new double[] {PhoenixSignalRegistry.getValue(turnCurrent)};
+    inputs.turnTempCelsius = new double[] {PhoenixSignalRegistry.getValue(turnTemp)};
 
+    // Already in meters, the sensor to mechanism ratio includes the wheel circumference
     inputs.odometryDrivePositionsMeters =
-        drivePositionQueue.stream().mapToDouble(Units::rotationsToRadians).toArray();
+        drivePositionQueue.stream().mapToDouble(Double::doubleValue).toArray();
     inputs.odometryTurnPositions =
         turnPositionQueue.stream()
             .map(Rotation2d::fromRotations) // should be after offset + gear ratio
             .toArray(Rotation2d[]::new);
+    // Latest odometry sample, holding the last one through a loop without samples
+    if (inputs.odometryDrivePositionsMeters.length > 0) {
+      inputs.drivePositionMeters =
+          inputs.odometryDrivePositionsMeters[inputs.odometryDrivePositionsMeters.length - 1];
+    }
+    if (inputs.odometryTurnPositions.length > 0) {
+      inputs.turnPosition = inputs.odometryTurnPositions[inputs.odometryTurnPositions.length - 1];
+    }
     drivePositionQueue.clear();
     turnPositionQueue.clear();
   }
 
   @Override
   public void setDriveVoltage(final double volts) {
-    driveTalon.setControl(driveVoltage.withOutput(volts));
+    driveControl.setControl(driveVoltage.withOutput(volts), volts);
   }
 
   @Override
   public void setTurnVoltage(final double volts) {
-    turnTalon.setControl(turnVoltage.withOutput(volts));
+    turnControl.setControl(turnVoltage.withOutput(volts), volts);
   }
 
   @Override
   public void setDriveSetpoint(final double metersPerSecond) {
-    driveTalon.setControl(drivePIDF.withVelocity(metersPerSecond));
+    driveControl.setControl(drivePIDF.withVelocity(metersPerSecond), metersPerSecond);
   }
 
   @Override
   public void setTurnSetpoint(final Rotation2d rotation) {
-    turnTalon.setControl(turnPID.withPosition(rotation.getRotations()));
+    turnControl.setControl(turnPID.withPosition(rotation.getRotations()), rotation.getRotations());
+  }
+
+  @Override
+  public void setDriveCurrentLimit(final double amps) {
+    driveCurrentLimits.StatorCurrentLimit = amps;
+    // Only the current limits group, without waiting for the response
+    driveTalon.getConfigurator().apply(driveCurrentLimits, 0.0);
+  }
+
+  @Override
+  public void setDriveSupplyCurrentLimit(final double amps) {
+    driveCurrentLimits.SupplyCurrentLimit = amps;
+    driveCurrentLimits.SupplyCurrentThreshold = amps;
+    driveCurrentLimits.SupplyTimeThreshold = 0.0;
+    driveCurrentLimits.SupplyCurrentLimitEnable = true;
+    driveTalon.getConfigurator().apply(driveCurrentLimits, 0.0);
+  }
+
+  @Override
+  public double getWheelRadiusMeters() {
+    return wheelRadius;
   }
 
   @Override
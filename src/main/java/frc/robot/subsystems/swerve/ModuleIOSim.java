@@ -13,91 +13,141 @@
 
 package frc.robot.subsystems.swerve;
 
-import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.system.plant.DCMotor;
-import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import frc.robot.utils.sim.MotorMechanismSim;
+import frc.robot.utils.sim.PhysicsSim;
 
 /**
  * Physics sim implementation of module IO.
  *
- * <p>Uses two flywheel sims for the drive and turn motors, with the absolute position initialized
- * to a random value. The flywheel sims are not physically accurate, but provide a decent
- * approximation for the behavior of the module.
+ * <p>Uses two motor mechanism sims for the drive and turn motors, with the absolute position
+ * initialized to a random value. The sims are not physically accurate, but provide a decent
+ * approximation for the behavior of the module. They are stepped by PhysicsSim, which also runs the
+ * closed loop controllers at the TalonFX rate.
  */
-public class ModuleIOSim implements ModuleIO {
-  private static final double LOOP_PERIOD_SECS = 0.02;
+public class ModuleIOSim implements ModuleIO, PhysicsSim.Mechanism {
+  // Wheel plus the motor rotor reflected through the gearing, for use with SwerveDriveSim
+  public static final double WHEEL_MOI = 0.002;
 
   private final String name;
 
-  private final DCMotorSim driveSim =
-      // Third param is the moment of inertia of the swerve wheel
-      // Used to approximate the robot inertia, not perfect but fine for the
-      // Fidelity of simulation we are targeting
-      new DCMotorSim(DCMotor.getKrakenX60Foc(1), Module.DRIVE_GEAR_RATIO, 0.025);
-  private final DCMotorSim turnSim =
+  private final MotorMechanismSim driveSim;
+  private final MotorMechanismSim turnSim =
       // Third param is the moment of inertia of the swerve steer
-      new DCMotorSim(DCMotor.getKrakenX60Foc(1), Module.TURN_GEAR_RATIO, 0.004);
+      new MotorMechanismSim(DCMotor.getKrakenX60Foc(1), Module.TURN_GEAR_RATIO, 0.004);
 
   private final Rotation2d turnAbsoluteInitPosition = new Rotation2d(Math.random() * 2.0 * Math.PI);
-  private double driveAppliedVolts = 0.0;
-  private double turnAppliedVolts = 0.0;
 
-  private final PIDController turnController = new PIDController(100.0, 0.0, 0.0);
-  private final PIDController driveController = new PIDController(0.3, 0.0, 0.0);
+  private final PIDController turnController =
+      new PIDController(100.0, 0.0, 0.0, PhysicsSim.CONTROL_PERIOD_SECONDS);
+  private final PIDController driveController =
+      new PIDController(0.3, 0.0, 0.0, PhysicsSim.CONTROL_PERIOD_SECONDS);
   private final SimpleMotorFeedforward driveFeedforward = new SimpleMotorFeedforward(0.0, 3.2);
 
-  public ModuleIOSim(final String name) {
+  // Closed loop setpoints, run by updateControl until a voltage is set
+  private boolean driveClosedLoop = false;
+  private double driveSetpointMetersPerSec = 0.0;
+  private boolean turnClosedLoop = false;
+  private double turnSetpointRotations = 0.0;
+
+  /**
+   * Creates a new ModuleIOSim.
+   *
+   * @param name The module name
+   * @param driveMoi Moment of inertia seen by the drive motor, at the wheel
+   */
+  public ModuleIOSim(final String name, final double driveMoi) {
     this.name = name;
+    driveSim = new MotorMechanismSim(DCMotor.getKrakenX60Foc(1), Module.DRIVE_GEAR_RATIO, driveMoi);
+    driveSim.setCurrentLimit(Module.DRIVE_STATOR_CURRENT_LIMIT);
+    turnSim.setCurrentLimit(Module.TURN_STATOR_CURRENT_LIMIT);
+    PhysicsSim.register(this);
   }
 
   @Override
   public void updateInputs(final ModuleIOInputs inputs) {
-    driveSim.update(LOOP_PERIOD_SECS);
-    turnSim.update(LOOP_PERIOD_SECS);
-
-    inputs.drivePositionMeters = driveSim.getAngularPositionRad() * Module.WHEEL_RADIUS;
-    inputs.driveVelocityMetersPerSec = driveSim.getAngularVelocityRadPerSec() * Module.WHEEL_RADIUS;
-    inputs.driveAppliedVolts = driveAppliedVolts;
+    inputs.drivePositionMeters = driveSim.getPositionRad() * Module.NOMINAL_WHEEL_RADIUS;
+    inputs.driveVelocityMetersPerSec =
+        driveSim.getVelocityRadPerSec() * Module.NOMINAL_WHEEL_RADIUS;
+    inputs.driveAppliedVolts = driveSim.getAppliedVolts();
     inputs.driveCurrentAmps = new double[] {Math.abs(driveSim.getCurrentDrawAmps())};
 
     inputs.turnAbsolutePosition =
-        new Rotation2d(turnSim.getAngularPositionRad()).plus(turnAbsoluteInitPosition);
-    inputs.turnPosition = new Rotation2d(turnSim.getAngularPositionRad());
-    inputs.turnVelocityRadPerSec = turnSim.getAngularVelocityRadPerSec();
-    inputs.turnAppliedVolts = turnAppliedVolts;
+        new Rotation2d(turnSim.getPositionRad()).plus(turnAbsoluteInitPosition);
+    inputs.turnPosition = new Rotation2d(turnSim.getPositionRad());
+    inputs.turnVelocityRadPerSec = turnSim.getVelocityRadPerSec();
+    inputs.turnAppliedVolts = turnSim.getAppliedVolts();
     inputs.turnCurrentAmps = new double[] {Math.abs(turnSim.getCurrentDrawAmps())};
 
     inputs.odometryDrivePositionsMeters = new double[] {inputs.drivePositionMeters};
     inputs.odometryTurnPositions = new Rotation2d[] {inputs.turnPosition};
   }
 
+  @Override
+  public void updateControl() {
+    if (driveClosedLoop) {
+      driveSim.setInputVoltage(
+          driveController.calculate(
+                  driveSim.getVelocityRadPerSec() * Module.NOMINAL_WHEEL_RADIUS,
+                  driveSetpointMetersPerSec)
+              + driveFeedforward.calculate(driveSetpointMetersPerSec));
+    }
+    if (turnClosedLoop) {
+      turnSim.setInputVoltage(
+          turnController.calculate(
+              turnSim.getPositionRad() / (2.0 * Math.PI), turnSetpointRotations));
+    }
+  }
+
+  @Override
+  public void step(double dtSeconds, boolean enabled) {
+    driveSim.update(dtSeconds, enabled);
+    turnSim.update(dtSeconds, enabled);
+  }
+
   @Override
   public void setDriveVoltage(final double volts) {
-    driveAppliedVolts = MathUtil.clamp(volts, -12.0, 12.0);
-    driveSim.setInputVoltage(driveAppliedVolts);
+    driveClosedLoop = false;
+    driveSim.setInputVoltage(volts);
   }
 
   @Override
   public void setTurnVoltage(final double volts) {
-    turnAppliedVolts = MathUtil.clamp(volts, -12.0, 12.0);
-    turnSim.setInputVoltage(turnAppliedVolts);
+    turnClosedLoop = false;
+    turnSim.setInputVoltage(volts);
   }
 
   @Override
   public void setDriveSetpoint(final double metersPerSecond) {
-    setDriveVoltage(
-        driveController.calculate(
-                driveSim.getAngularVelocityRadPerSec() * Module.WHEEL_RADIUS, metersPerSecond)
-            + driveFeedforward.calculate(metersPerSecond));
+    driveClosedLoop = true;
+    driveSetpointMetersPerSec = metersPerSecond;
   }
 
   @Override
   public void setTurnSetpoint(final Rotation2d rotation) {
-    setTurnVoltage(
-        turnController.calculate(turnSim.getAngularPositionRotations(), rotation.getRotations()));
+    turnClosedLoop = true;
+    turnSetpointRotations = rotation.getRotations();
+  }
+
+  @Override
+  public void setDriveCurrentLimit(final double amps) {
+    driveSim.setCurrentLimit(amps);
+  }
+
+  @Override
+  public void setDriveSupplyCurrentLimit(final double amps) {
+    driveSim.setSupplyCurrentLimit(amps);
+  }
+
+  MotorMechanismSim getDriveSim() {
+    return driveSim;
+  }
+
+  MotorMechanismSim getTurnSim() {
+    return turnSim;
   }
 
   @Override
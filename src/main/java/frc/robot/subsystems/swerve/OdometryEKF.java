@@ -0,0 +1,190 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.swerve;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Extended Kalman filter over the field relative state [x, y, theta, vx, vy].
+ *
+ * <p>Predicts with the gyro's change in heading and the IMU's robot relative acceleration, and
+ * corrects with the velocity measured by the wheels. The wheels are trusted less while they slip or
+ * the robot is tilted, so the IMU carries the estimate through those. Everything is stored in fixed
+ * size primitive arrays, row major, so steps don't allocate.
+ */
+public class OdometryEKF {
+  private static final int N = 5;
+  private static final int X = 0;
+  private static final int Y = 1;
+  private static final int THETA = 2;
+  private static final int VX = 3;
+  private static final int VY = 4;
+
+  // Process noise
+  public static final double ACCEL_STD_DEV = 0.5; // m/s^2
+  public static final double HEADING_STD_DEV_PER_SAMPLE = 0.001; // rad
+  // Measurement noise of the wheel velocity
+  public static final double WHEEL_VELOCITY_STD_DEV = 0.05; // m/s
+  public static final double UNRELIABLE_WHEEL_VELOCITY_STD_DEV = 1.0; // m/s
+
+  private final double[] state = new double[N];
+  private final double[] covariance = new double[N * N];
+  // Scratch space
+  private final double[] jacobian = new double[N * N];
+  private final double[] product = new double[N * N];
+  private final double[] gain = new double[N * 2];
+
+  public OdometryEKF() {
+    reset(0.0, 0.0, 0.0);
+  }
+
+  /** Resets to a pose at rest, with a small position uncertainty. */
+  public void reset(double x, double y, double theta) {
+    for (int i = 0; i < N; i++) {
+      state[i] = 0.0;
+    }
+    state[X] = x;
+    state[Y] = y;
+    state[THETA] = theta;
+    for (int i = 0; i < N * N; i++) {
+      covariance[i] = 0.0;
+    }
+    for (int i = 0; i < N; i++) {
+      covariance[i * N + i] = 1e-4;
+    }
+  }
+
+  /**
+   * Advances the state by one sample.
+   *
+   * @param dt The sample period
+   * @param dTheta The change in heading over the sample
+   * @param accelX Robot relative acceleration along x, without gravity
+   * @param accelY Robot relative acceleration along y, without gravity
+   */
+  public void predict(double dt, double dTheta, double accelX, double accelY) {
+    double cos = Math.cos(state[THETA]);
+    double sin = Math.sin(state[THETA]);
+    double ax = accelX * cos - accelY * sin;
+    double ay = accelX * sin + accelY * cos;
+    double halfDtSquared = 0.5 * dt * dt;
+
+    state[X] += state[VX] * dt + ax * halfDtSquared;
+    state[Y] += state[VY] * dt + ay * halfDtSquared;
+    state[THETA] = MathUtil.angleModulus(state[THETA] + dTheta);
+    state[VX] += ax * dt;
+    state[VY] += ay * dt;
+
+    // Jacobian, the field relative acceleration depends on the heading
+    for (int i = 0; i < N * N; i++) {
+      jacobian[i] = 0.0;
+    }
+    for (int i = 0; i < N; i++) {
+      jacobian[i * N + i] = 1.0;
+    }
+    jacobian[X * N + THETA] = -ay * halfDtSquared;
+    jacobian[X * N + VX] = dt;
+    jacobian[Y * N + THETA] = ax * halfDtSquared;
+    jacobian[Y * N + VY] = dt;
+    jacobian[VX * N + THETA] = -ay * dt;
+    jacobian[VY * N + THETA] = ax * dt;
+
+    // P = F P F^T + Q
+    for (int i = 0; i < N; i++) {
+      for (int j = 0; j < N; j++) {
+        double sum = 0.0;
+        for (int k = 0; k < N; k++) {
+          sum += jacobian[i * N + k] * covariance[k * N + j];
+        }
+        product[i * N + j] = sum;
+      }
+    }
+    for (int i = 0; i < N; i++) {
+      for (int j = 0; j < N; j++) {
+        double sum = 0.0;
+        for (int k = 0; k < N; k++) {
+          sum += product[i * N + k] * jacobian[j * N + k];
+        }
+        covariance[i * N + j] = sum;
+      }
+    }
+    double accelVariance = ACCEL_STD_DEV * ACCEL_STD_DEV;
+    double positionNoise = accelVariance * halfDtSquared * halfDtSquared;
+    covariance[X * N + X] += positionNoise;
+    covariance[Y * N + Y] += positionNoise;
+    covariance[THETA * N + THETA] += HEADING_STD_DEV_PER_SAMPLE * HEADING_STD_DEV_PER_SAMPLE;
+    covariance[VX * N + VX] += accelVariance * dt * dt;
+    covariance[VY * N + VY] += accelVariance * dt * dt;
+  }
+
+  /**
+   * Corrects the velocity with a measurement from the wheels.
+   *
+   * @param vx Field relative velocity along x
+   * @param vy Field relative velocity along y
+   * @param reliable Whether the wheels are gripping and on the ground
+   */
+  public void correctVelocity(double vx, double vy, boolean reliable) {
+    double stdDev = reliable ? WHEEL_VELOCITY_STD_DEV : UNRELIABLE_WHEEL_VELOCITY_STD_DEV;
+    double variance = stdDev * stdDev;
+
+    // S = H P H^T + R, the velocity block of P
+    double s00 = covariance[VX * N + VX] + variance;
+    double s01 = covariance[VX * N + VY];
+    double s10 = covariance[VY * N + VX];
+    double s11 = covariance[VY * N + VY] + variance;
+    double det = s00 * s11 - s01 * s10;
+    double i00 = s11 / det;
+    double i01 = -s01 / det;
+    double i10 = -s10 / det;
+    double i11 = s00 / det;
+
+    // K = P H^T S^-1
+    for (int i = 0; i < N; i++) {
+      double p0 = covariance[i * N + VX];
+      double p1 = covariance[i * N + VY];
+      gain[i * 2] = p0 * i00 + p1 * i10;
+      gain[i * 2 + 1] = p0 * i01 + p1 * i11;
+    }
+
+    double innovationX = vx - state[VX];
+    double innovationY = vy - state[VY];
+    for (int i = 0; i < N; i++) {
+      state[i] += gain[i * 2] * innovationX + gain[i * 2 + 1] * innovationY;
+    }
+    state[THETA] = MathUtil.angleModulus(state[THETA]);
+
+    // P = (I - K H) P, the velocity rows are copied first since they are overwritten
+    for (int j = 0; j < N; j++) {
+      product[j] = covariance[VX * N + j];
+      product[N + j] = covariance[VY * N + j];
+    }
+    for (int i = 0; i < N; i++) {
+      for (int j = 0; j < N; j++) {
+        covariance[i * N + j] -= gain[i * 2] * product[j] + gain[i * 2 + 1] * product[N + j];
+      }
+    }
+  }
+
+  public double getX() {
+    return state[X];
+  }
+
+  public double getY() {
+    return state[Y];
+  }
+
+  public double getTheta() {
+    return state[THETA];
+  }
+
+  public double getVelocityX() {
+    return state[VX];
+  }
+
+  public double getVelocityY() {
+    return state[VY];
+  }
+}
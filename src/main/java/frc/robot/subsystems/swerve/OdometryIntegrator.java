@@ -0,0 +1,252 @@
+// Copyright 2021-2023 FRC 6328
+// http://github.com/Mechanical-Advantage
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// version 3 as published by the Free Software Foundation or
+// available in the root directory of this project.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+
+package frc.robot.subsystems.swerve;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+
+/**
+ * Integrates high frequency module deltas and gyro samples into a field relative pose.
+ *
+ * <p>Every sample, each module's delta gives its own estimate of how the robot center moved, once
+ * the rotation is taken out. A module whose estimate disagrees with the average of the other
+ * modules by more than the slip threshold is slipping, and counts for much less in the average used
+ * for the pose. Runs on primitive arrays, so it doesn't allocate per sample.
+ *
+ * <p>When IMU acceleration samples are available, the wheel velocity corrects an {@link
+ * OdometryEKF} predicted from the IMU instead of being integrated directly. The wheels are
+ * distrusted while any module slips or the robot is tilted.
+ *
+ * <p>The period of each sample, used for the slip threshold and the filter, comes from the sample
+ * timestamps. Without them it falls back to the nominal loop period over the sample count.
+ */
+public class OdometryIntegrator {
+  // Disagreement with the other modules that counts as slip, plus a fraction of the robot speed
+  public static final double SLIP_THRESHOLD_METERS_PER_SEC = 0.25;
+  public static final double SLIP_THRESHOLD_SPEED_FRACTION = 0.1;
+  // Weight of a slipping module in the pose, relative to a gripping one
+  public static final double SLIP_WEIGHT = 0.05;
+  // Without timestamps, samples arrive once per loop, so their period is the loop period over the
+  // sample count
+  private static final double LOOP_PERIOD_SECONDS = 0.02;
+  // Longer gaps between timestamps, ie after the odometry thread stalls, use the fallback period
+  private static final double MAX_SAMPLE_PERIOD_SECONDS = 0.1;
+
+  private final double[] moduleX;
+  private final double[] moduleY;
+  private final double moduleRadiusSquaredSum;
+  // Per module estimate of the robot center's translation for the current sample
+  private final double[] centerDx;
+  private final double[] centerDy;
+  private final boolean[] slipping;
+  private final OdometryEKF ekf = new OdometryEKF();
+  // Whether the filter is tracking the pose, it is restarted from the wheel pose when it wasn't
+  private boolean ekfActive = false;
+
+  private double x = 0.0;
+  private double y = 0.0;
+  private double heading = 0.0;
+  private double lastGyroYaw = 0.0;
+  private double lastTimestamp = Double.NaN;
+  private Pose2d pose = new Pose2d();
+
+  /**
+   * Creates a new OdometryIntegrator.
+   *
+   * @param moduleTranslations The module positions relative to the robot center
+   */
+  public OdometryIntegrator(Translation2d[] moduleTranslations) {
+    int moduleCount = moduleTranslations.length;
+    moduleX = new double[moduleCount];
+    moduleY = new double[moduleCount];
+    centerDx = new double[moduleCount];
+    centerDy = new double[moduleCount];
+    slipping = new boolean[moduleCount];
+    double radiusSquaredSum = 0.0;
+    for (int i = 0; i < moduleCount; i++) {
+      moduleX[i] = moduleTranslations[i].getX();
+      moduleY[i] = moduleTranslations[i].getY();
+      radiusSquaredSum += moduleX[i] * moduleX[i] + moduleY[i] * moduleY[i];
+    }
+    moduleRadiusSquaredSum = radiusSquaredSum;
+  }
+
+  /**
+   * Applies every odometry sample received since the last update.
+   *
+   * @param moduleDeltas Position deltas for each module, indexed [module][sample]
+   * @param gyroYaws Gyro yaw for each sample, or null if the gyro is disconnected
+   * @return The updated pose
+   */
+  public Pose2d update(SwerveModulePosition[][] moduleDeltas, Rotation2d[] gyroYaws) {
+    return update(moduleDeltas, gyroYaws, null, null, null, false);
+  }
+
+  /**
+   * Applies every odometry sample received since the last update, fusing IMU acceleration.
+   *
+   * @param moduleDeltas Position deltas for each module, indexed [module][sample]
+   * @param gyroYaws Gyro yaw for each sample, or null if the gyro is disconnected
+   * @param timestamps Timestamp of each sample in seconds, or null to use the nominal period
+   * @param accelX Robot relative x acceleration for each sample, or null to only use the wheels
+   * @param accelY Robot relative y acceleration for each sample, or null to only use the wheels
+   * @param tilted Whether the robot is tilted, so the wheels may not be on the ground
+   * @return The updated pose
+   */
+  public Pose2d update(
+      SwerveModulePosition[][] moduleDeltas,
+      Rotation2d[] gyroYaws,
+      double[] timestamps,
+      double[] accelX,
+      double[] accelY,
+      boolean tilted) {
+    int sampleCount = gyroYaws != null ? gyroYaws.length : Integer.MAX_VALUE;
+    boolean useImu = gyroYaws != null && accelX != null && accelY != null;
+    if (useImu) {
+      sampleCount = Math.min(sampleCount, Math.min(accelX.length, accelY.length));
+      if (!ekfActive) {
+        ekf.reset(x, y, heading);
+        ekfActive = true;
+      }
+    } else {
+      ekfActive = false;
+    }
+    for (SwerveModulePosition[] deltas : moduleDeltas) {
+      sampleCount = Math.min(sampleCount, deltas.length);
+    }
+    for (int i = 0; i < slipping.length; i++) {
+      slipping[i] = false;
+    }
+    if (sampleCount == 0) {
+      return pose;
+    }
+    double nominalPeriod = LOOP_PERIOD_SECONDS / sampleCount;
+    for (int sampleIndex = 0; sampleIndex < sampleCount; sampleIndex++) {
+      double samplePeriod = nominalPeriod;
+      if (timestamps != null && sampleIndex < timestamps.length) {
+        double period = timestamps[sampleIndex] - lastTimestamp;
+        if (period > 0.0 && period <= MAX_SAMPLE_PERIOD_SECONDS) {
+          samplePeriod = period;
+        }
+        lastTimestamp = timestamps[sampleIndex];
+      }
+      double dTheta;
+      if (gyroYaws != null) {
+        // If the gyro is connected, use its change in angle since the last sample
+        double gyroYaw = gyroYaws[sampleIndex].getRadians();
+        dTheta = MathUtil.angleModulus(gyroYaw - lastGyroYaw);
+        lastGyroYaw = gyroYaw;
+      } else {
+        // Otherwise the least squares rotation from the modules, which are centered on the robot
+        double moment = 0.0;
+        for (int i = 0; i < moduleX.length; i++) {
+          SwerveModulePosition delta = moduleDeltas[i][sampleIndex];
+          double distance = delta.distanceMeters;
+          double angle = delta.angle.getRadians();
+          moment +=
+              moduleX[i] * distance * Math.sin(angle) - moduleY[i] * distance * Math.cos(angle);
+        }
+        dTheta = moment / moduleRadiusSquaredSum;
+      }
+
+      // Each module's estimate of the center's translation, with the rotation taken out
+      double sumDx = 0.0;
+      double sumDy = 0.0;
+      for (int i = 0; i < moduleX.length; i++) {
+        SwerveModulePosition delta = moduleDeltas[i][sampleIndex];
+        double distance = delta.distanceMeters;
+        double angle = delta.angle.getRadians();
+        centerDx[i] = distance * Math.cos(angle) + dTheta * moduleY[i];
+        centerDy[i] = distance * Math.sin(angle) - dTheta * moduleX[i];
+        sumDx += centerDx[i];
+        sumDy += centerDy[i];
+      }
+
+      // Compare each module with the average of the others
+      boolean anySlip = false;
+      double weightSum = 0.0;
+      double dx = 0.0;
+      double dy = 0.0;
+      int others = moduleX.length - 1;
+      for (int i = 0; i < moduleX.length; i++) {
+        double othersDx = (sumDx - centerDx[i]) / others;
+        double othersDy = (sumDy - centerDy[i]) / others;
+        double threshold =
+            (SLIP_THRESHOLD_METERS_PER_SEC * samplePeriod)
+                + SLIP_THRESHOLD_SPEED_FRACTION * Math.hypot(othersDx, othersDy);
+        boolean slip = Math.hypot(centerDx[i] - othersDx, centerDy[i] - othersDy) > threshold;
+        slipping[i] |= slip;
+        anySlip |= slip;
+        double weight = slip ? SLIP_WEIGHT : 1.0;
+        dx += weight * centerDx[i];
+        dy += weight * centerDy[i];
+        weightSum += weight;
+      }
+      dx /= weightSum;
+      dy /= weightSum;
+
+      // Apply the twist (change since last sample) to the current pose, like Pose2d.exp
+      double sinTerm;
+      double cosTerm;
+      if (Math.abs(dTheta) < 1e-9) {
+        sinTerm = 1.0 - dTheta * dTheta / 6.0;
+        cosTerm = 0.5 * dTheta;
+      } else {
+        sinTerm = Math.sin(dTheta) / dTheta;
+        cosTerm = (1.0 - Math.cos(dTheta)) / dTheta;
+      }
+      double robotDx = dx * sinTerm - dy * cosTerm;
+      double robotDy = dx * cosTerm + dy * sinTerm;
+      double cos = Math.cos(heading);
+      double sin = Math.sin(heading);
+      double fieldDx = robotDx * cos - robotDy * sin;
+      double fieldDy = robotDx * sin + robotDy * cos;
+      if (useImu) {
+        ekf.predict(samplePeriod, dTheta, accelX[sampleIndex], accelY[sampleIndex]);
+        ekf.correctVelocity(fieldDx / samplePeriod, fieldDy / samplePeriod, !anySlip && !tilted);
+        x = ekf.getX();
+        y = ekf.getY();
+        heading = ekf.getTheta();
+      } else {
+        x += fieldDx;
+        y += fieldDy;
+        heading = MathUtil.angleModulus(heading + dTheta);
+      }
+    }
+    pose = new Pose2d(x, y, new Rotation2d(heading));
+    return pose;
+  }
+
+  /** Returns whether a module slipped in any sample of the last update. */
+  public boolean isSlipping(int moduleIndex) {
+    return slipping[moduleIndex];
+  }
+
+  /** Returns the current pose. */
+  public Pose2d getPose() {
+    return pose;
+  }
+
+  /** Resets the current pose. */
+  public void setPose(Pose2d pose) {
+    this.pose = pose;
+    x = pose.getX();
+    y = pose.getY();
+    heading = pose.getRotation().getRadians();
+    ekf.reset(x, y, heading);
+  }
+}
@@ -17,6 +17,7 @@ import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.CANBus;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.hardware.ParentDevice;
+import edu.wpi.first.wpilibj.RobotController;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
@@ -37,6 +38,7 @@ public class PhoenixOdometryThread extends Thread {
       new ReentrantLock(); // Prevents conflicts when registering signals
   private BaseStatusSignal[] signals = new BaseStatusSignal[0];
   private final List<Queue<Double>> queues = new ArrayList<>();
+  private final List<Queue<Double>> timestampQueues = new ArrayList<>();
   private boolean isCANFD = false;
 
   private static PhoenixOdometryThread instance = null;
@@ -71,6 +73,18 @@ public class PhoenixOdometryThread extends Thread {
     return queue;
   }
 
+  /** Returns a queue of the FPGA timestamp in seconds of each sample, filled with the signals. */
+  public Queue<Double> makeTimestampQueue() {
+    Queue<Double> queue = new ArrayBlockingQueue<>(100);
+    SwerveSubsystem.odometryLock.lock();
+    try {
+      timestampQueues.add(queue);
+    } finally {
+      SwerveSubsystem.odometryLock.unlock();
+    }
+    return queue;
+  }
+
   @Override
   public void run() {
     while (true) {
@@ -94,11 +108,15 @@ public class PhoenixOdometryThread extends Thread {
       }
 
       // Save new data to queues
+      double timestamp = RobotController.getFPGATime() / 1e6;
       SwerveSubsystem.odometryLock.lock();
       try {
         for (int i = 0; i < signals.length; i++) {
           queues.get(i).offer(signals[i].getValueAsDouble());
         }
+        for (int i = 0; i < timestampQueues.size(); i++) {
+          timestampQueues.get(i).offer(timestamp);
+        }
       } finally {
         SwerveSubsystem.odometryLock.unlock();
       }
@@ -0,0 +1,248 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.swerve;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.util.Units;
+import frc.robot.utils.field.ObstacleDistanceField;
+import frc.robot.utils.sim.MotorMechanismSim;
+import frc.robot.utils.sim.PhysicsSim;
+
+/**
+ * 2D rigid body simulation of the drivetrain, driven by the simulated modules.
+ *
+ * <p>Every substep, each wheel's contact patch exchanges an impulse with the chassis. The impulse
+ * is the one that would remove the slip between the wheel and the ground, clamped to the friction
+ * circle, so wheels grip until the motors or the chassis ask for more than the tires can give.
+ * Solving for impulses instead of integrating a stiff tire force keeps the model stable at any
+ * substep. Motor torque is limited by the drive stator current limit in the module sims.
+ *
+ * <p>The bumper corners and edge midpoints collide with the field boundary and, optionally, the
+ * obstacle field, with no restitution. Must be registered with PhysicsSim after the module sims so
+ * their motors are stepped first.
+ */
+public class SwerveDriveSim implements PhysicsSim.Mechanism {
+  public static final double FIELD_LENGTH_METERS = 16.541;
+  public static final double FIELD_WIDTH_METERS = 8.211;
+  public static final double ROBOT_MASS_KG = Units.lbsToKilograms(125.0);
+  public static final double BUMPER_HALF_LENGTH_METERS = Units.inchesToMeters(35.0) / 2.0;
+  // Uniform square plate
+  public static final double ROBOT_MOI_KG_METERS_SQUARED =
+      ROBOT_MASS_KG * Math.pow(2.0 * BUMPER_HALF_LENGTH_METERS, 2) / 6.0;
+  public static final double WHEEL_COEFFICIENT_OF_FRICTION = 1.2;
+  // Passes over the wheels per substep, more converges closer to the coupled solution
+  private static final int SOLVER_ITERATIONS = 2;
+
+  private final ModuleIOSim[] modules;
+  private final double[] moduleX;
+  private final double[] moduleY;
+  private ObstacleDistanceField obstacles = null;
+  private final double maxImpulsePerSecond;
+
+  // Collision points in the robot frame
+  private final double[] bumperX;
+  private final double[] bumperY;
+
+  // Field relative chassis state
+  private double x = 0.0;
+  private double y = 0.0;
+  private double heading = 0.0;
+  private double vx = 0.0;
+  private double vy = 0.0;
+  private double omega = 0.0;
+  // Integrated yaw rate, which setPose doesn't change, like a real gyro
+  private double gyroYawRad = 0.0;
+  // Field relative acceleration over the last substep
+  private double ax = 0.0;
+  private double ay = 0.0;
+
+  /**
+   * Creates a new SwerveDriveSim. Registers itself with PhysicsSim.
+   *
+   * @param modules The module sims, in the same order as the translations
+   * @param moduleTranslations The module positions relative to the robot center
+   */
+  public SwerveDriveSim(ModuleIOSim[] modules, Translation2d[] moduleTranslations) {
+    this.modules = modules;
+    moduleX = new double[modules.length];
+    moduleY = new double[modules.length];
+    for (int i = 0; i < modules.length; i++) {
+      moduleX[i] = moduleTranslations[i].getX();
+      moduleY[i] = moduleTranslations[i].getY();
+    }
+    // Weight is shared evenly between the wheels
+    maxImpulsePerSecond = WHEEL_COEFFICIENT_OF_FRICTION * ROBOT_MASS_KG * 9.81 / modules.length;
+
+    double h = BUMPER_HALF_LENGTH_METERS;
+    bumperX = new double[] {h, h, -h, -h, h, 0.0, -h, 0.0};
+    bumperY = new double[] {h, -h, h, -h, 0.0, h, 0.0, -h};
+
+    PhysicsSim.register(this);
+  }
+
+  @Override
+  public void step(double dtSeconds, boolean enabled) {
+    double maxImpulse = maxImpulsePerSecond * dtSeconds;
+    double lastVx = vx;
+    double lastVy = vy;
+    for (int iteration = 0; iteration < SOLVER_ITERATIONS; iteration++) {
+      for (int i = 0; i < modules.length; i++) {
+        solveWheel(i, maxImpulse);
+      }
+    }
+
+    x += vx * dtSeconds;
+    y += vy * dtSeconds;
+    heading += omega * dtSeconds;
+    gyroYawRad += omega * dtSeconds;
+
+    solveCollisions();
+    ax = (vx - lastVx) / dtSeconds;
+    ay = (vy - lastVy) / dtSeconds;
+  }
+
+  /** Applies the friction impulse between one wheel and the ground. */
+  private void solveWheel(int i, double maxImpulse) {
+    MotorMechanismSim wheel = modules[i].getDriveSim();
+    double cos = Math.cos(heading);
+    double sin = Math.sin(heading);
+    // Module position relative to the center, in the field frame
+    double rx = moduleX[i] * cos - moduleY[i] * sin;
+    double ry = moduleX[i] * sin + moduleY[i] * cos;
+    // Wheel direction in the field frame
+    double steer = heading + modules[i].getTurnSim().getPositionRad();
+    double ux = Math.cos(steer);
+    double uy = Math.sin(steer);
+
+    // Ground velocity at the contact patch
+    double px = vx - omega * ry;
+    double py = vy + omega * rx;
+    double rollingSlip =
+        wheel.getVelocityRadPerSec() * Module.NOMINAL_WHEEL_RADIUS - (px * ux + py * uy);
+    double lateralSlip = -(px * -uy + py * ux);
+
+    // Impulses that would remove each slip, using the effective mass along each direction
+    double rCrossU = rx * uy - ry * ux;
+    double rCrossN = rx * ux + ry * uy;
+    double wheelInverseMass =
+        Module.NOMINAL_WHEEL_RADIUS * Module.NOMINAL_WHEEL_RADIUS / wheel.getMoiKgMetersSquared();
+    double rollingImpulse =
+        rollingSlip
+            / (1.0 / ROBOT_MASS_KG
+                + rCrossU * rCrossU / ROBOT_MOI_KG_METERS_SQUARED
+                + wheelInverseMass);
+    double lateralImpulse =
+        lateralSlip / (1.0 / ROBOT_MASS_KG + rCrossN * rCrossN / ROBOT_MOI_KG_METERS_SQUARED);
+
+    // Friction circle
+    double magnitude = Math.hypot(rollingImpulse, lateralImpulse);
+    if (magnitude > maxImpulse) {
+      rollingImpulse *= maxImpulse / magnitude;
+      lateralImpulse *= maxImpulse / magnitude;
+    }
+
+    double jx = rollingImpulse * ux - lateralImpulse * uy;
+    double jy = rollingImpulse * uy + lateralImpulse * ux;
+    applyImpulse(rx, ry, jx, jy);
+    wheel.applyAngularImpulse(-rollingImpulse * Module.NOMINAL_WHEEL_RADIUS);
+  }
+
+  /** Pushes the bumpers out of the field walls and obstacles. */
+  private void solveCollisions() {
+    double cos = Math.cos(heading);
+    double sin = Math.sin(heading);
+    for (int i = 0; i < bumperX.length; i++) {
+      double rx = bumperX[i] * cos - bumperY[i] * sin;
+      double ry = bumperX[i] * sin + bumperY[i] * cos;
+      double cx = x + rx;
+      double cy = y + ry;
+      if (cx < 0.0) {
+        resolveContact(rx, ry, 1.0, 0.0, -cx);
+      } else if (cx > FIELD_LENGTH_METERS) {
+        resolveContact(rx, ry, -1.0, 0.0, cx - FIELD_LENGTH_METERS);
+      }
+      if (cy < 0.0) {
+        resolveContact(rx, ry, 0.0, 1.0, -cy);
+      } else if (cy > FIELD_WIDTH_METERS) {
+        resolveContact(rx, ry, 0.0, -1.0, cy - FIELD_WIDTH_METERS);
+      }
+      if (obstacles != null) {
+        double distance = obstacles.getDistance(x + rx, y + ry);
+        if (distance < 0.0) {
+          resolveContact(
+              rx,
+              ry,
+              obstacles.getGradientX(x + rx, y + ry),
+              obstacles.getGradientY(x + rx, y + ry),
+              -distance);
+        }
+      }
+    }
+  }
+
+  /** Moves the robot out of a contact and removes the velocity into it. */
+  private void resolveContact(double rx, double ry, double nx, double ny, double depth) {
+    if (nx == 0.0 && ny == 0.0) {
+      return;
+    }
+    x += nx * depth;
+    y += ny * depth;
+    double approach = (vx - omega * ry) * nx + (vy + omega * rx) * ny;
+    if (approach < 0.0) {
+      double rCrossN = rx * ny - ry * nx;
+      double impulse =
+          -approach / (1.0 / ROBOT_MASS_KG + rCrossN * rCrossN / ROBOT_MOI_KG_METERS_SQUARED);
+      applyImpulse(rx, ry, impulse * nx, impulse * ny);
+    }
+  }
+
+  private void applyImpulse(double rx, double ry, double jx, double jy) {
+    vx += jx / ROBOT_MASS_KG;
+    vy += jy / ROBOT_MASS_KG;
+    omega += (rx * jy - ry * jx) / ROBOT_MOI_KG_METERS_SQUARED;
+  }
+
+  /** Sets the obstacles to collide with, or null to only collide with the field boundary. */
+  public void setObstacles(ObstacleDistanceField obstacles) {
+    this.obstacles = obstacles;
+  }
+
+  /** Returns the simulated robot pose. */
+  public Pose2d getPose() {
+    return new Pose2d(x, y, new Rotation2d(heading));
+  }
+
+  /** Moves the simulated robot to a pose and stops it. The gyro keeps its reading. */
+  public void setPose(Pose2d pose) {
+    x = pose.getX();
+    y = pose.getY();
+    heading = pose.getRotation().getRadians();
+    vx = 0.0;
+    vy = 0.0;
+    omega = 0.0;
+  }
+
+  /** Returns the yaw a gyro mounted on the robot would read. */
+  public double getGyroYawRad() {
+    return gyroYawRad;
+  }
+
+  /** Returns the robot relative x acceleration an IMU on the robot would read. */
+  public double getAccelXMetersPerSecSq() {
+    return ax * Math.cos(heading) + ay * Math.sin(heading);
+  }
+
+  /** Returns the robot relative y acceleration an IMU on the robot would read. */
+  public double getAccelYMetersPerSecSq() {
+    return -ax * Math.sin(heading) + ay * Math.cos(heading);
+  }
+
+  /** Returns the yaw rate in radians per second. */
+  public double getYawRateRadPerSec() {
+    return omega;
+  }
+}
@@ -0,0 +1,226 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.swerve;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+
+/**
+ * Limits how fast the module setpoints change, so the modules can follow them without scrubbing.
+ *
+ * <p>Each loop the generator moves from the last setpoint towards the requested chassis speeds by a
+ * fraction s of the difference. Moving along the difference keeps the direction of the chassis
+ * request, only the size of the step changes. The largest s is found for two limits:
+ *
+ * <ul>
+ *   <li>Module acceleration. The change in a module's velocity vector is linear in s, so its limit
+ *       is solved directly. The limit is on the whole vector so it also covers turning, which is
+ *       what the tires have to hold.
+ *   <li>Steering velocity. The module angle isn't linear in s, so this limit is found by bisection.
+ *       Modules may flip and drive backwards, so no module has to turn more than 90 degrees.
+ * </ul>
+ *
+ * <p>The output angles are also slewed at the steering limit, which covers modules starting from a
+ * stop where no step is small enough. Stopped modules turn towards the requested direction, so they
+ * are lined up to start moving within a few steps. Works on primitive arrays and reuses its output
+ * states, so the only allocations are the output angles.
+ */
+public class SwerveSetpointGenerator {
+  // Steering limit is solved to within 1/1024 of the step
+  private static final int BISECTION_ITERATIONS = 10;
+  // Module speeds below this don't have a meaningful angle
+  private static final double STOPPED_SPEED_METERS_PER_SEC = 1e-3;
+
+  /** Which limit shortened the last step. */
+  public enum Constraint {
+    NONE,
+    ACCELERATION,
+    STEERING
+  }
+
+  private final double[] moduleX;
+  private final double[] moduleY;
+  private final double maxModuleSpeed;
+  private final double maxModuleAcceleration;
+  private final double maxSteerVelocity;
+
+  // Last setpoint, robot relative
+  private double lastVx = 0.0;
+  private double lastVy = 0.0;
+  private double lastOmega = 0.0;
+  private final double[] lastAngles;
+
+  private final SwerveModuleState[] states;
+  private Constraint constraint = Constraint.NONE;
+  private double interpolation = 1.0;
+
+  /**
+   * Creates a new SwerveSetpointGenerator.
+   *
+   * @param moduleTranslations The module positions relative to the robot center
+   * @param maxModuleSpeed The fastest a module can drive in m/s
+   * @param maxModuleAcceleration The fastest a module's velocity can change in m/s^2
+   * @param maxSteerVelocity The fastest a module can steer in rad/s
+   */
+  public SwerveSetpointGenerator(
+      Translation2d[] moduleTranslations,
+      double maxModuleSpeed,
+      double maxModuleAcceleration,
+      double maxSteerVelocity) {
+    moduleX = new double[moduleTranslations.length];
+    moduleY = new double[moduleTranslations.length];
+    lastAngles = new double[moduleTranslations.length];
+    states = new SwerveModuleState[moduleTranslations.length];
+    for (int i = 0; i < moduleTranslations.length; i++) {
+      moduleX[i] = moduleTranslations[i].getX();
+      moduleY[i] = moduleTranslations[i].getY();
+      states[i] = new SwerveModuleState();
+    }
+    this.maxModuleSpeed = maxModuleSpeed;
+    this.maxModuleAcceleration = maxModuleAcceleration;
+    this.maxSteerVelocity = maxSteerVelocity;
+  }
+
+  /**
+   * Restarts from the measured module states, ie while disabled so the first setpoint after
+   * enabling starts from where the modules are.
+   *
+   * @param measuredSpeeds The measured robot relative chassis speeds
+   * @param measuredStates The measured module states
+   */
+  public void reset(ChassisSpeeds measuredSpeeds, SwerveModuleState[] measuredStates) {
+    lastVx = measuredSpeeds.vxMetersPerSecond;
+    lastVy = measuredSpeeds.vyMetersPerSecond;
+    lastOmega = measuredSpeeds.omegaRadiansPerSecond;
+    for (int i = 0; i < lastAngles.length; i++) {
+      lastAngles[i] = measuredStates[i].angle.getRadians();
+    }
+  }
+
+  /**
+   * Steps the setpoint towards the requested speeds.
+   *
+   * @param speeds The requested robot relative speeds
+   * @param dtSeconds The time until the next setpoint
+   * @return The module states, reused between calls
+   */
+  public SwerveModuleState[] generate(ChassisSpeeds speeds, double dtSeconds) {
+    // Scale the request down so no module is over its max speed, like desaturateWheelSpeeds
+    double vx = speeds.vxMetersPerSecond;
+    double vy = speeds.vyMetersPerSecond;
+    double omega = speeds.omegaRadiansPerSecond;
+    double fastestModule = 0.0;
+    for (int i = 0; i < moduleX.length; i++) {
+      fastestModule =
+          Math.max(fastestModule, Math.hypot(vx - omega * moduleY[i], vy + omega * moduleX[i]));
+    }
+    if (fastestModule > maxModuleSpeed) {
+      double scale = maxModuleSpeed / fastestModule;
+      vx *= scale;
+      vy *= scale;
+      omega *= scale;
+    }
+    double dvx = vx - lastVx;
+    double dvy = vy - lastVy;
+    double dOmega = omega - lastOmega;
+
+    // Acceleration limit, solved directly
+    double s = 1.0;
+    double maxDeltaV = maxModuleAcceleration * dtSeconds;
+    for (int i = 0; i < moduleX.length; i++) {
+      double deltaV = Math.hypot(dvx - dOmega * moduleY[i], dvy + dOmega * moduleX[i]);
+      if (deltaV * s > maxDeltaV) {
+        s = maxDeltaV / deltaV;
+      }
+    }
+    constraint = s < 1.0 ? Constraint.ACCELERATION : Constraint.NONE;
+
+    // Steering limit, by bisection below the acceleration limit
+    double maxSteer = maxSteerVelocity * dtSeconds;
+    if (!isSteeringFeasible(s, dvx, dvy, dOmega, maxSteer)) {
+      double low = 0.0;
+      double high = s;
+      for (int iteration = 0; iteration < BISECTION_ITERATIONS; iteration++) {
+        double mid = 0.5 * (low + high);
+        if (isSteeringFeasible(mid, dvx, dvy, dOmega, maxSteer)) {
+          low = mid;
+        } else {
+          high = mid;
+        }
+      }
+      s = low;
+      constraint = Constraint.STEERING;
+    }
+    interpolation = s;
+
+    lastVx += s * dvx;
+    lastVy += s * dvy;
+    lastOmega += s * dOmega;
+    for (int i = 0; i < moduleX.length; i++) {
+      double mx = lastVx - lastOmega * moduleY[i];
+      double my = lastVy + lastOmega * moduleX[i];
+      double speed = Math.hypot(mx, my);
+      double steer = 0.0;
+      if (speed > STOPPED_SPEED_METERS_PER_SEC) {
+        steer = MathUtil.angleModulus(Math.atan2(my, mx) - lastAngles[i]);
+        if (Math.abs(steer) > Math.PI / 2.0) {
+          steer -= Math.copySign(Math.PI, steer);
+          speed = -speed;
+        }
+      } else {
+        speed = 0.0;
+        // Still turn towards the request, so a module starting from a stop more than one step off
+        // the requested direction isn't held at a stop by the steering limit
+        double requestX = vx - omega * moduleY[i];
+        double requestY = vy + omega * moduleX[i];
+        if (Math.hypot(requestX, requestY) > STOPPED_SPEED_METERS_PER_SEC) {
+          steer = MathUtil.angleModulus(Math.atan2(requestY, requestX) - lastAngles[i]);
+          if (Math.abs(steer) > Math.PI / 2.0) {
+            steer -= Math.copySign(Math.PI, steer);
+          }
+        }
+      }
+      lastAngles[i] =
+          MathUtil.angleModulus(lastAngles[i] + MathUtil.clamp(steer, -maxSteer, maxSteer));
+      states[i].speedMetersPerSecond = speed;
+      states[i].angle = new Rotation2d(lastAngles[i]);
+    }
+    return states;
+  }
+
+  /** Returns whether every module can reach its angle at interpolation s within one step. */
+  private boolean isSteeringFeasible(
+      double s, double dvx, double dvy, double dOmega, double maxSteer) {
+    double vx = lastVx + s * dvx;
+    double vy = lastVy + s * dvy;
+    double omega = lastOmega + s * dOmega;
+    for (int i = 0; i < moduleX.length; i++) {
+      double mx = vx - omega * moduleY[i];
+      double my = vy + omega * moduleX[i];
+      if (Math.hypot(mx, my) <= STOPPED_SPEED_METERS_PER_SEC) {
+        continue;
+      }
+      double steer = Math.abs(MathUtil.angleModulus(Math.atan2(my, mx) - lastAngles[i]));
+      // Flipping the module drives it backwards instead
+      if (Math.min(steer, Math.PI - steer) > maxSteer) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the limit that shortened the last step. */
+  public Constraint getConstraint() {
+    return constraint;
+  }
+
+  /** Returns the fraction of the requested change that the last step made. */
+  public double getInterpolation() {
+    return interpolation;
+  }
+}
@@ -16,7 +16,6 @@ package frc.robot.subsystems.swerve;
 import static edu.wpi.first.units.Units.Seconds;
 import static edu.wpi.first.units.Units.Volts;
 
-import com.choreo.lib.Choreo;
 import com.choreo.lib.ChoreoTrajectoryState;
 import com.ctre.phoenix6.SignalLogger;
 import com.google.common.collect.Streams;
@@ -26,16 +25,15 @@ import com.pathplanner.lib.util.PIDConstants;
 import com.pathplanner.lib.util.PathPlannerLogging;
 import com.pathplanner.lib.util.ReplanningConfig;
 import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.filter.SlewRateLimiter;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.geometry.Transform2d;
 import edu.wpi.first.math.geometry.Translation2d;
-import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
-import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.trajectory.TrapezoidProfile.Constraints;
 import edu.wpi.first.math.trajectory.TrapezoidProfile.State;
 import edu.wpi.first.math.util.Units;
@@ -52,6 +50,17 @@ import frc.robot.FieldConstants;
 import frc.robot.subsystems.swerve.Module.ModuleConstants;
 import frc.robot.utils.autoaim.AutoAim;
 import frc.robot.utils.autoaim.ShotData;
+import frc.robot.utils.characterization.CharacterizationConfig;
+import frc.robot.utils.characterization.FeedforwardFitter;
+import frc.robot.utils.characterization.FeedforwardFitter.Gravity;
+import frc.robot.utils.characterization.WheelRadiusEstimator;
+import frc.robot.utils.field.ObstacleDistanceField;
+import frc.robot.utils.logging.LoopProfiler;
+import frc.robot.utils.logging.TieredLogger;
+import frc.robot.utils.logging.TieredLogger.Level;
+import frc.robot.utils.power.MotorThermalModel;
+import frc.robot.utils.power.PowerManager;
+import frc.robot.utils.trajectory.PackedTrajectory;
 import java.util.Arrays;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -59,8 +68,10 @@ import java.util.function.DoubleSupplier;
 import java.util.function.Supplier;
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
+import org.littletonrobotics.junction.networktables.LoggedDashboardBoolean;
+import org.littletonrobotics.junction.networktables.LoggedDashboardNumber;
 
-public class SwerveSubsystem extends SubsystemBase {
+public class SwerveSubsystem extends SubsystemBase implements PowerManager.Consumer {
 
   public class AutoAimStates {
 
@@ -86,6 +97,20 @@ public class SwerveSubsystem extends SubsystemBase {
   public static final double DRIVE_BASE_RADIUS =
       Math.hypot(TRACK_WIDTH_X / 2.0, TRACK_WIDTH_Y / 2.0);
   public static final double MAX_ANGULAR_SPEED = MAX_LINEAR_SPEED / DRIVE_BASE_RADIUS;
+  public static final double NOMINAL_PERIOD = 0.02;
+  public static final int SLIP_HOLD_LOOPS = 10;
+  public static final double TILT_THRESHOLD_DEGREES = 5.0;
+  // Slow enough that the wheels don't slip, long enough for a couple of turns
+  public static final double WHEEL_RADIUS_MAX_VELOCITY = 1.5; // rad/s
+  public static final double WHEEL_RADIUS_RAMP_RATE = 0.5; // rad/s^2
+  public static final double WHEEL_RADIUS_DURATION_SECONDS = 12.0;
+  // Longer gaps mean runVelocity wasn't called last loop, so the gap isn't the loop period
+  public static final double MAX_DISCRETIZATION_PERIOD = 0.1;
+  // A little under what the tires can hold
+  public static final double MAX_MODULE_ACCELERATION = 10.0;
+  // 80% of the steering motor's free speed
+  public static final double MAX_STEER_VELOCITY =
+      0.8 * DCMotor.getKrakenX60Foc(1).freeSpeedRadPerSec / Module.TURN_GEAR_RATIO;
   // Hardware constants
   public static final int PIGEON_ID = 0;
 
@@ -101,15 +126,43 @@ public class SwerveSubsystem extends SubsystemBase {
   public static final Lock odometryLock = new ReentrantLock();
   private final GyroIO gyroIO;
   private final GyroIOInputsAutoLogged gyroInputs = new GyroIOInputsAutoLogged();
+  private final LoopProfiler.Section periodicProfile = LoopProfiler.section("Subsystems/Swerve");
+  // Drive motors, steering is part of the power reserve
+  private final MotorThermalModel thermalModel = new MotorThermalModel(4);
+  private final MotorThermalModel steerThermalModel = new MotorThermalModel(4);
   private final Module[] modules; // FL, FR, BL, BR
 
   private SwerveDriveKinematics kinematics = new SwerveDriveKinematics(getModuleTranslations());
-  private Pose2d pose = new Pose2d();
-  private Rotation2d lastGyroRotation = new Rotation2d();
-  private SwerveDriveOdometry odometry;
+  private final OdometryIntegrator odometryIntegrator =
+      new OdometryIntegrator(getModuleTranslations());
+  // Caps drive current on slipping wheels
+  private final LoggedDashboardBoolean tractionControl =
+      new LoggedDashboardBoolean("Traction Control", false);
+  private final boolean[] slipping = new boolean[4];
+  // Loops left to hold the slip current limit, so it isn't resent every time slip flickers
+  private final int[] slipHoldLoops = new int[4];
+  private final SwerveModulePosition[][] moduleDeltas = new SwerveModulePosition[4][];
+  // Computed once at startup so driver assist lookups are cheap
+  private final ObstacleDistanceField obstacleField = ObstacleDistanceField.loadFromNavGrid();
+  private final SwerveSetpointGenerator setpointGenerator =
+      new SwerveSetpointGenerator(
+          getModuleTranslations(), MAX_LINEAR_SPEED, MAX_MODULE_ACCELERATION, MAX_STEER_VELOCITY);
+  // How long after runVelocity the modules act on its setpoint, tuned by watching heading drift
+  // while spinning and translating
+  private final LoggedDashboardNumber skewLatencySeconds =
+      new LoggedDashboardNumber("Swerve/Skew Latency (s)", 0.02);
+  private double lastVelocityTimestamp = Double.NaN;
+  // Only set in simulation, where it is the ground truth for the robot pose
+  private SwerveDriveSim driveSim = null;
 
   private final SysIdRoutine moduleSteerRoutine;
   private final SysIdRoutine driveRoutine;
+  // Gains are per mechanism rotation for steer and per meter for drive, like the Slot0 configs
+  private final FeedforwardFitter steerFitter = new FeedforwardFitter("Steer", Gravity.NONE, 0.05);
+  private final FeedforwardFitter driveFitter = new FeedforwardFitter("Drive", Gravity.NONE, 0.05);
+  private final WheelRadiusEstimator wheelRadiusEstimator =
+      new WheelRadiusEstimator(DRIVE_BASE_RADIUS, 4);
+  private final double[] wheelPositionsRad = new double[4];
 
   public SwerveSubsystem(GyroIO gyroIO, ModuleIO... moduleIOs) {
     this.gyroIO = gyroIO;
@@ -143,8 +196,9 @@ public class SwerveSubsystem extends SubsystemBase {
 
     PathPlannerLogging.setLogTargetPoseCallback(
         (pose) -> {
-          Logger.recordOutput("PathPlanner/Target", pose);
-          Logger.recordOutput(
+          TieredLogger.recordOutput(Level.DEBUG, "PathPlanner/Target", pose);
+          TieredLogger.recordOutput(
+              Level.DEBUG,
               "PathPlanner/Absolute Translation Error",
               pose.minus(getPose()).getTranslation().getNorm());
         });
@@ -153,8 +207,6 @@ public class SwerveSubsystem extends SubsystemBase {
     Logger.recordOutput("PathPlanner/Target", new Pose2d());
     Logger.recordOutput("PathPlanner/Absolute Translation Error", 0.0);
 
-    odometry = new SwerveDriveOdometry(kinematics, getRotation(), getModulePositions());
-
     moduleSteerRoutine =
         new SysIdRoutine(
             new SysIdRoutine.Config(
@@ -165,7 +217,11 @@ public class SwerveSubsystem extends SubsystemBase {
                 (state) -> SignalLogger.writeString("state", state.toString())),
             new SysIdRoutine.Mechanism(
                 (Measure<Voltage> volts) -> modules[0].runSteerCharacterization(volts.in(Volts)),
-                null,
+                (log) ->
+                    steerFitter.addSample(
+                        modules[0].getTurnAppliedVolts(),
+                        modules[0].getAngle().getRotations(),
+                        Units.radiansToRotations(modules[0].getTurnVelocityRadPerSec())),
                 this));
     driveRoutine =
         new SysIdRoutine(
@@ -177,7 +233,13 @@ public class SwerveSubsystem extends SubsystemBase {
                 (state) -> SignalLogger.writeString("state", state.toString())),
             new SysIdRoutine.Mechanism(
                 (Measure<Voltage> volts) -> runDriveCharacterizationVolts(volts.in(Volts)),
-                null,
+                (log) -> {
+                  double volts = 0.0;
+                  for (var module : modules) {
+                    volts += module.getDriveAppliedVolts() / modules.length;
+                  }
+                  driveFitter.addSample(volts, 0.0, getCharacterizationVelocity());
+                },
                 this));
   }
 
@@ -196,20 +258,28 @@ public class SwerveSubsystem extends SubsystemBase {
   }
 
   /**
-   * Constructs an array of swerve module ios corresponding to a simulated robot.
+   * Constructs a swerve subsystem on a simulated drivetrain, with wheel slip, collisions and a
+   * simulated gyro.
    *
-   * @return The array of swerve module ios.
+   * @return The swerve subsystem.
    */
-  public static ModuleIO[] createSimModules() {
-    return new ModuleIO[] {
-      new ModuleIOSim("FrontLeft"),
-      new ModuleIOSim("FrontRight"),
-      new ModuleIOSim("BackLeft"),
-      new ModuleIOSim("BackRight")
-    };
+  public static SwerveSubsystem createSim() {
+    ModuleIOSim[] moduleIOs =
+        new ModuleIOSim[] {
+          new ModuleIOSim("FrontLeft", ModuleIOSim.WHEEL_MOI),
+          new ModuleIOSim("FrontRight", ModuleIOSim.WHEEL_MOI),
+          new ModuleIOSim("BackLeft", ModuleIOSim.WHEEL_MOI),
+          new ModuleIOSim("BackRight", ModuleIOSim.WHEEL_MOI)
+        };
+    SwerveDriveSim driveSim = new SwerveDriveSim(moduleIOs, getModuleTranslations());
+    SwerveSubsystem swerve = new SwerveSubsystem(new GyroIOSim(driveSim), moduleIOs);
+    driveSim.setObstacles(swerve.obstacleField);
+    swerve.driveSim = driveSim;
+    return swerve;
   }
 
   public void periodic() {
+    periodicProfile.start();
     odometryLock.lock(); // Prevents odometry updates while reading data
     gyroIO.updateInputs(gyroInputs);
     for (var module : modules) {
@@ -217,9 +287,18 @@ public class SwerveSubsystem extends SubsystemBase {
     }
     odometryLock.unlock();
     Logger.processInputs("Swerve/Gyro", gyroInputs);
-    for (var module : modules) {
-      module.periodic();
+    for (int i = 0; i < modules.length; i++) {
+      modules[i].periodic();
+      thermalModel.update(i, modules[i].getDriveCurrentAmps(), modules[i].getDriveTempCelsius());
+      steerThermalModel.update(i, modules[i].getTurnCurrentAmps(), modules[i].getTurnTempCelsius());
     }
+    Logger.recordOutput("Swerve/Thermal Derate", getThermalDerate());
+    TieredLogger.recordOutput(
+        Level.DEBUG, "Swerve/Predicted Temperatures", thermalModel.getPredictedTemperaturesC());
+    TieredLogger.recordOutput(
+        Level.DEBUG,
+        "Swerve/Predicted Steer Temperatures",
+        steerThermalModel.getPredictedTemperaturesC());
 
     // Stop moving when disabled
     if (DriverStation.isDisabled()) {
@@ -231,52 +310,83 @@ public class SwerveSubsystem extends SubsystemBase {
     if (DriverStation.isDisabled()) {
       Logger.recordOutput("SwerveStates/Setpoints", new SwerveModuleState[] {});
       Logger.recordOutput("SwerveStates/SetpointsOptimized", new SwerveModuleState[] {});
+      setpointGenerator.reset(getRobotRelativeSpeeds(), getModuleStates());
     }
 
-    Logger.recordOutput("ShotData/Angle", AutoAimStates.curShotData.getRotation());
-    Logger.recordOutput("ShotData/Left RPM", AutoAimStates.curShotData.getLeftRPS());
-    Logger.recordOutput("ShotData/Right RPM", AutoAimStates.curShotData.getRightRPS());
-    Logger.recordOutput("ShotData/Flight Time", AutoAimStates.curShotData.getFlightTimeSeconds());
+    // These need a shot map lookup, so skip computing them on loops they aren't logged
+    if (TieredLogger.shouldLog(Level.DEBUG, "AutoAim/Virtual Target")) {
+      Logger.recordOutput("AutoAim/Virtual Target", getVirtualTarget());
+    }
+    if (TieredLogger.shouldLog(Level.DEBUG, "AutoAim/FuturePose")) {
+      Logger.recordOutput("AutoAim/FuturePose", getLinearFuturePose());
+    }
+    TieredLogger.recordOutput(
+        Level.DEBUG, "ShotData/Angle", AutoAimStates.curShotData.getRotation());
+    TieredLogger.recordOutput(
+        Level.DEBUG, "ShotData/Left RPM", AutoAimStates.curShotData.getLeftRPS());
+    TieredLogger.recordOutput(
+        Level.DEBUG, "ShotData/Right RPM", AutoAimStates.curShotData.getRightRPS());
+    TieredLogger.recordOutput(
+        Level.DEBUG, "ShotData/Flight Time", AutoAimStates.curShotData.getFlightTimeSeconds());
     // Update odometry
-    int deltaCount =
-        Math.min(
-            gyroInputs.connected ? gyroInputs.odometryYawPositions.length : Integer.MAX_VALUE,
-            Arrays.stream(modules)
-                .map((m) -> m.getPositionDeltas().length)
-                .min(Integer::compare)
-                .get());
-    for (int deltaIndex = 0; deltaIndex < deltaCount; deltaIndex++) {
-      // Read wheel deltas from each module
-      SwerveModulePosition[] wheelDeltas = new SwerveModulePosition[4];
-      for (int moduleIndex = 0; moduleIndex < 4; moduleIndex++) {
-        wheelDeltas[moduleIndex] = modules[moduleIndex].getPositionDeltas()[deltaIndex];
-      }
-
-      // The twist represents the motion of the robot since the last
-      // sample in x, y, and theta based only on the modules, without
-      // the gyro. The gyro is always disconnected in simulation.
-      var twist = kinematics.toTwist2d(wheelDeltas);
-      if (gyroInputs.connected) {
-        // If the gyro is connected, replace the theta component of the twist
-        // with the change in angle since the last sample.
-        Rotation2d gyroRotation = gyroInputs.odometryYawPositions[deltaIndex];
-        twist = new Twist2d(twist.dx, twist.dy, gyroRotation.minus(lastGyroRotation).getRadians());
-        lastGyroRotation = gyroRotation;
-      }
-      // Apply the twist (change since last sample) to the current pose
-      pose = pose.exp(twist);
+    for (int i = 0; i < modules.length; i++) {
+      moduleDeltas[i] = modules[i].getPositionDeltas();
+    }
+    // Tipped up on the stage or a note, so the wheels may not all be touching the ground
+    boolean tilted =
+        Math.abs(gyroInputs.pitchPosition.getDegrees()) > TILT_THRESHOLD_DEGREES
+            || Math.abs(gyroInputs.rollPosition.getDegrees()) > TILT_THRESHOLD_DEGREES;
+    Logger.recordOutput("Swerve/Tilted", tilted);
+    if (gyroInputs.connected) {
+      odometryIntegrator.update(
+          moduleDeltas,
+          gyroInputs.odometryYawPositions,
+          gyroInputs.odometryTimestamps,
+          gyroInputs.odometryAccelXMetersPerSecSq,
+          gyroInputs.odometryAccelYMetersPerSecSq,
+          tilted);
+    } else {
+      odometryIntegrator.update(
+          moduleDeltas, null, gyroInputs.odometryTimestamps, null, null, tilted);
+    }
+    for (int i = 0; i < modules.length; i++) {
+      slipping[i] = odometryIntegrator.isSlipping(i);
+      slipHoldLoops[i] = slipping[i] ? SLIP_HOLD_LOOPS : Math.max(slipHoldLoops[i] - 1, 0);
+      modules[i].setDriveCurrentLimit(
+          tractionControl.get() && slipHoldLoops[i] > 0
+              ? Module.SLIP_STATOR_CURRENT_LIMIT
+              : Module.DRIVE_STATOR_CURRENT_LIMIT);
+    }
+    Logger.recordOutput("Swerve/Slipping Modules", slipping);
+    if (driveSim != null) {
+      Logger.recordOutput("Swerve/Sim Pose", driveSim.getPose());
     }
+    periodicProfile.stop();
   }
 
   private void runVelocity(ChassisSpeeds speeds) {
+    // Use the measured loop period, unless this didn't run last loop
+    double timestamp = Timer.getFPGATimestamp();
+    double dt = timestamp - lastVelocityTimestamp;
+    if (!(dt > 0.0 && dt < MAX_DISCRETIZATION_PERIOD)) {
+      dt = NOMINAL_PERIOD;
+    }
+    lastVelocityTimestamp = timestamp;
+    TieredLogger.recordOutput(Level.DEBUG, "Swerve/Discretization Period", dt);
+
     // Calculate module setpoints
-    ChassisSpeeds discreteSpeeds = ChassisSpeeds.discretize(speeds, 0.02);
-    SwerveModuleState[] setpointStates = kinematics.toSwerveModuleStates(discreteSpeeds);
-    SwerveDriveKinematics.desaturateWheelSpeeds(setpointStates, MAX_LINEAR_SPEED);
+    ChassisSpeeds discreteSpeeds = compensateSkew(speeds, dt, skewLatencySeconds.get());
+    SwerveModuleState[] setpointStates = setpointGenerator.generate(discreteSpeeds, dt);
+    Logger.recordOutput("Swerve/Setpoint Constraint", setpointGenerator.getConstraint().name());
+    TieredLogger.recordOutput(
+        Level.DEBUG, "Swerve/Setpoint Interpolation", setpointGenerator.getInterpolation());
 
     Logger.recordOutput("Swerve/Target Speeds", discreteSpeeds);
-    Logger.recordOutput("Swerve/Speed Error", discreteSpeeds.minus(getVelocity()));
-    Logger.recordOutput(
+    if (TieredLogger.shouldLog(Level.DEBUG, "Swerve/Speed Error")) {
+      Logger.recordOutput("Swerve/Speed Error", discreteSpeeds.minus(getVelocity()));
+    }
+    TieredLogger.recordOutput(
+        Level.DEBUG,
         "Swerve/Target Chassis Speeds Field Relative",
         ChassisSpeeds.fromRobotRelativeSpeeds(discreteSpeeds, getRotation()));
 
@@ -288,7 +398,32 @@ public class SwerveSubsystem extends SubsystemBase {
 
     // Log setpoint states
     Logger.recordOutput("SwerveStates/Setpoints", setpointStates);
-    Logger.recordOutput("SwerveStates/SetpointsOptimized", optimizedSetpointStates);
+    TieredLogger.recordOutput(
+        Level.DEBUG, "SwerveStates/SetpointsOptimized", optimizedSetpointStates);
+  }
+
+  /**
+   * Corrects robot relative speeds for the robot turning while it translates.
+   *
+   * <p>Discretizing over the loop period accounts for the turning during the loop. The setpoint is
+   * also only acted on after some latency, when the robot has already turned further, so the
+   * translation is rotated back by the heading change over that latency.
+   *
+   * @param speeds The requested robot relative speeds
+   * @param dtSeconds The loop period
+   * @param latencySeconds The time between sending the setpoint and the modules acting on it
+   * @return The compensated robot relative speeds
+   */
+  public static ChassisSpeeds compensateSkew(
+      ChassisSpeeds speeds, double dtSeconds, double latencySeconds) {
+    ChassisSpeeds discreteSpeeds = ChassisSpeeds.discretize(speeds, dtSeconds);
+    double skew = -discreteSpeeds.omegaRadiansPerSecond * latencySeconds;
+    double cos = Math.cos(skew);
+    double sin = Math.sin(skew);
+    return new ChassisSpeeds(
+        discreteSpeeds.vxMetersPerSecond * cos - discreteSpeeds.vyMetersPerSecond * sin,
+        discreteSpeeds.vxMetersPerSecond * sin + discreteSpeeds.vyMetersPerSecond * cos,
+        discreteSpeeds.omegaRadiansPerSecond);
   }
 
   /**
@@ -310,6 +445,23 @@ public class SwerveSubsystem extends SubsystemBase {
         () -> ChassisSpeeds.fromFieldRelativeSpeeds(speeds.get(), getRotation()));
   }
 
+  /**
+   * Projects field relative speeds away from nearby field obstacles so the driver can't clip the
+   * stage or walls.
+   *
+   * @param speedsFieldRelative The requested field relative speeds
+   * @return The adjusted field relative speeds
+   */
+  public ChassisSpeeds assistObstacleAvoidance(ChassisSpeeds speedsFieldRelative) {
+    ChassisSpeeds assisted = obstacleField.assist(getPose().getTranslation(), speedsFieldRelative);
+    TieredLogger.recordOutput(
+        Level.DEBUG,
+        "Swerve/Obstacle Distance",
+        obstacleField.getDistance(getPose().getX(), getPose().getY()));
+    TieredLogger.recordOutput(Level.DEBUG, "Swerve/Obstacle Assisted Speeds", assisted);
+    return assisted;
+  }
+
   /**
    * Stops the drive and turns the modules to an X arrangement to resist movement. The modules will
    * return to their normal orientations the next time a nonzero velocity is requested.
@@ -340,16 +492,6 @@ public class SwerveSubsystem extends SubsystemBase {
     return driveVelocityAverage / 4.0;
   }
 
-  private SwerveModulePosition[] getModulePositions() {
-
-    SwerveModulePosition[] positions = new SwerveModulePosition[4];
-    for (int i = 0; i < 4; i++) {
-      positions[i] = modules[i].getPosition();
-    }
-
-    return positions;
-  }
-
   /** Returns the module states (turn angles and drive velocitoes) for all of the modules. */
   @AutoLogOutput(key = "SwerveStates/Measured")
   private SwerveModuleState[] getModuleStates() {
@@ -380,18 +522,20 @@ public class SwerveSubsystem extends SubsystemBase {
   /** Returns the current odometry pose. */
   @AutoLogOutput(key = "Odometry/Robot")
   public Pose2d getPose() {
-    return pose;
+    return odometryIntegrator.getPose();
   }
 
   /** Returns the current odometry rotation. */
   public Rotation2d getRotation() {
-    return pose.getRotation();
+    return getPose().getRotation();
   }
 
   /** Resets the current odometry pose. */
   public void setPose(Pose2d pose) {
-    this.pose = pose;
-    odometry.resetPosition(gyroInputs.yawPosition, getModulePositions(), pose);
+    if (driveSim != null) {
+      driveSim.setPose(pose);
+    }
+    odometryIntegrator.setPose(pose);
   }
 
   public void setYaw(Rotation2d yaw) {
@@ -431,32 +575,15 @@ public class SwerveSubsystem extends SubsystemBase {
    * @return The transformed pose
    */
   public Pose2d getVirtualTarget(ChassisSpeeds speedsRobotRelative) {
-
-    Pose2d target = FieldConstants.getSpeaker();
-
-    double distance =
-        getLinearFuturePose(AutoAim.LOOKAHEAD_TIME_SECONDS, speedsRobotRelative)
-            .minus(target)
-            .getTranslation()
-            .getNorm();
-
-    return target.transformBy(
-        new Transform2d(
-                speedsRobotRelative.vxMetersPerSecond
-                    * AutoAim.shotMap.get(distance).getFlightTimeSeconds(),
-                speedsRobotRelative.vyMetersPerSecond
-                    * AutoAim.shotMap.get(distance).getFlightTimeSeconds(),
-                target.getRotation())
-            .inverse());
+    return AutoAim.getVirtualTarget(getPose(), speedsRobotRelative, FieldConstants.getSpeaker());
   }
 
-  @AutoLogOutput(key = "AutoAim/Virtual Target")
   public Pose2d getVirtualTarget() {
     return getVirtualTarget(getVelocity());
   }
 
   public ChoreoTrajectoryState getAutoState(double timestamp) {
-    return Choreo.getTrajectory(AutoAimStates.pathName).sample(timestamp);
+    return PackedTrajectory.load(AutoAimStates.pathName).sample(timestamp);
   }
 
   /**
@@ -467,15 +594,7 @@ public class SwerveSubsystem extends SubsystemBase {
    * @return The future pose
    */
   public Pose2d getLinearFuturePose(double time, ChassisSpeeds speedsFieldRelative) {
-
-    ChassisSpeeds speedsRobotRelative =
-        ChassisSpeeds.fromFieldRelativeSpeeds(speedsFieldRelative, getRotation());
-    return getPose()
-        .transformBy(
-            new Transform2d(
-                speedsRobotRelative.vxMetersPerSecond * time,
-                speedsRobotRelative.vyMetersPerSecond * time,
-                Rotation2d.fromRadians(speedsRobotRelative.omegaRadiansPerSecond * time)));
+    return AutoAim.getLinearFuturePose(getPose(), speedsFieldRelative, time);
   }
 
   /**
@@ -495,7 +614,6 @@ public class SwerveSubsystem extends SubsystemBase {
    *
    * @return The future pose
    */
-  @AutoLogOutput(key = "AutoAim/FuturePose")
   public Pose2d getLinearFuturePose() {
     return getLinearFuturePose(AutoAim.LOOKAHEAD_TIME_SECONDS);
   }
@@ -540,15 +658,20 @@ public class SwerveSubsystem extends SubsystemBase {
                       headingController.calculate(
                           getPose().getRotation().getRadians(),
                           AutoAimStates.rotationsToTranslation.getRadians());
-                  Logger.recordOutput("AutoAim/Ending Pose", AutoAimStates.endingPose);
-                  Logger.recordOutput(
-                      "AutoAim/Setpoint Rotation", headingController.getSetpoint().position);
-                  Logger.recordOutput(
-                      "AutoAim/Setpoint Velocity", headingController.getSetpoint().velocity);
-                  Logger.recordOutput(
-                      "AutoAim/Goal Rotation", headingController.getGoal().position);
-                  Logger.recordOutput(
-                      "AutoAim/Goal Velocity", headingController.getGoal().velocity);
+                  TieredLogger.recordOutput(
+                      Level.DEBUG, "AutoAim/Ending Pose", AutoAimStates.endingPose);
+                  TieredLogger.recordOutput(
+                      Level.TUNING,
+                      "AutoAim/Setpoint Rotation",
+                      headingController.getSetpoint().position);
+                  TieredLogger.recordOutput(
+                      Level.TUNING,
+                      "AutoAim/Setpoint Velocity",
+                      headingController.getSetpoint().velocity);
+                  TieredLogger.recordOutput(
+                      Level.TUNING, "AutoAim/Goal Rotation", headingController.getGoal().position);
+                  TieredLogger.recordOutput(
+                      Level.TUNING, "AutoAim/Goal Velocity", headingController.getGoal().velocity);
                   return new ChassisSpeeds(
                       xMetersPerSecond.getAsDouble(),
                       yMetersPerSecond.getAsDouble(),
@@ -565,6 +688,7 @@ public class SwerveSubsystem extends SubsystemBase {
                                   AutoAim.LOOKAHEAD_TIME_SECONDS, AutoAimStates.inputSpeeds)
                               .getY(),
                           AutoAimStates.rotationsToTranslation);
+                  // Logged once per command, so not decimated
                   Logger.recordOutput("AutoAim/Ending Pose", AutoAimStates.endingPose);
                   headingController.reset(new State(getPose().getRotation().getRadians(), 0));
                   Logger.recordOutput("AutoAim/Translated Target", AutoAimStates.virtualTarget);
@@ -621,16 +745,22 @@ public class SwerveSubsystem extends SubsystemBase {
                           - AutoAimStates.elapsedAutonomousSeconds
                           - AutoAimStates.startingAutonomousSeconds;
                   System.out.println(AutoAimStates.elapsedAutonomousSeconds);
-                  Logger.recordOutput("AutoAim/Ending Pose", AutoAimStates.endingPose);
-                  Logger.recordOutput("AutoAim/Virtual Target", AutoAimStates.virtualTarget);
-                  Logger.recordOutput(
-                      "AutoAim/Setpoint Rotation", headingController.getSetpoint().position);
-                  Logger.recordOutput(
-                      "AutoAim/Setpoint Velocity", headingController.getSetpoint().velocity);
-                  Logger.recordOutput(
-                      "AutoAim/Goal Rotation", headingController.getGoal().position);
-                  Logger.recordOutput(
-                      "AutoAim/Goal Velocity", headingController.getGoal().velocity);
+                  TieredLogger.recordOutput(
+                      Level.DEBUG, "AutoAim/Ending Pose", AutoAimStates.endingPose);
+                  TieredLogger.recordOutput(
+                      Level.DEBUG, "AutoAim/Virtual Target", AutoAimStates.virtualTarget);
+                  TieredLogger.recordOutput(
+                      Level.TUNING,
+                      "AutoAim/Setpoint Rotation",
+                      headingController.getSetpoint().position);
+                  TieredLogger.recordOutput(
+                      Level.TUNING,
+                      "AutoAim/Setpoint Velocity",
+                      headingController.getSetpoint().velocity);
+                  TieredLogger.recordOutput(
+                      Level.TUNING, "AutoAim/Goal Rotation", headingController.getGoal().position);
+                  TieredLogger.recordOutput(
+                      Level.TUNING, "AutoAim/Goal Velocity", headingController.getGoal().velocity);
                   return new ChassisSpeeds(
                       AutoAimStates.curState.velocityX,
                       AutoAimStates.curState.velocityY,
@@ -643,6 +773,7 @@ public class SwerveSubsystem extends SubsystemBase {
                           AutoAimStates.curState.x,
                           AutoAimStates.curState.y,
                           AutoAimStates.rotationsToTranslation);
+                  // Logged once per command, so not decimated
                   Logger.recordOutput("AutoAim/Ending Pose", AutoAimStates.endingPose);
                   headingController.reset(new State(getPose().getRotation().getRadians(), 0));
                   Logger.recordOutput("AutoAim/Translated Target", AutoAimStates.virtualTarget);
@@ -666,6 +797,7 @@ public class SwerveSubsystem extends SubsystemBase {
   public Command runModuleSteerCharacterizationCmd() {
     return Commands.sequence(
         this.runOnce(() -> SignalLogger.start()),
+        this.runOnce(steerFitter::reset),
         moduleSteerRoutine.quasistatic(Direction.kForward),
         this.stopCmd().withTimeout(1.0),
         moduleSteerRoutine.quasistatic(Direction.kReverse),
@@ -673,12 +805,59 @@ public class SwerveSubsystem extends SubsystemBase {
         moduleSteerRoutine.dynamic(Direction.kForward),
         this.stopCmd().withTimeout(1.0),
         moduleSteerRoutine.dynamic(Direction.kReverse),
+        this.runOnce(steerFitter::finish),
         this.runOnce(() -> SignalLogger.stop()));
   }
 
+  /**
+   * Spins in place, comparing the gyro's yaw with the wheel rotations to measure the wheel radius.
+   * The result is saved when the command ends, and used after robot code restarts.
+   */
+  public Command runWheelRadiusCharacterizationCmd() {
+    SlewRateLimiter limiter = new SlewRateLimiter(WHEEL_RADIUS_RAMP_RATE);
+    return Commands.sequence(
+            this.runOnce(
+                () -> {
+                  limiter.reset(0.0);
+                  wheelRadiusEstimator.reset(
+                      gyroInputs.yawPosition.getRadians(), getWheelPositionsRad());
+                }),
+            this.run(
+                () -> {
+                  runVelocity(
+                      new ChassisSpeeds(0.0, 0.0, limiter.calculate(WHEEL_RADIUS_MAX_VELOCITY)));
+                  wheelRadiusEstimator.update(
+                      gyroInputs.yawPosition.getRadians(), getWheelPositionsRad());
+                  Logger.recordOutput(
+                      "Characterization/Wheel Radius (m)",
+                      wheelRadiusEstimator.getWheelRadiusMeters());
+                  Logger.recordOutput(
+                      "Characterization/Wheel Radius Yaw (rad)",
+                      wheelRadiusEstimator.getYawDeltaRad());
+                }))
+        .withTimeout(WHEEL_RADIUS_DURATION_SECONDS)
+        .finallyDo(
+            () -> {
+              // Needs at least a full turn to average out the modules
+              double radius = wheelRadiusEstimator.getWheelRadiusMeters();
+              if (Math.abs(wheelRadiusEstimator.getYawDeltaRad()) > 2.0 * Math.PI
+                  && Double.isFinite(radius)) {
+                CharacterizationConfig.saveDouble(Module.WHEEL_RADIUS_CONFIG_KEY, radius);
+              }
+            });
+  }
+
+  private double[] getWheelPositionsRad() {
+    for (int i = 0; i < modules.length; i++) {
+      wheelPositionsRad[i] = modules[i].getWheelRadiusCharacterizationPosition();
+    }
+    return wheelPositionsRad;
+  }
+
   public Command runDriveCharacterizationCmd() {
     return Commands.sequence(
         this.runOnce(() -> SignalLogger.start()),
+        this.runOnce(driveFitter::reset),
         driveRoutine.quasistatic(Direction.kForward),
         this.stopCmd().withTimeout(1.0),
         driveRoutine.quasistatic(Direction.kReverse),
@@ -686,6 +865,31 @@ public class SwerveSubsystem extends SubsystemBase {
         driveRoutine.dynamic(Direction.kForward),
         this.stopCmd().withTimeout(1.0),
         driveRoutine.dynamic(Direction.kReverse),
+        this.runOnce(driveFitter::finish),
         this.runOnce(() -> SignalLogger.stop()));
   }
+
+  @Override
+  public double getSupplyCurrentAmps() {
+    double amps = 0.0;
+    for (Module module : modules) {
+      amps += module.getDriveSupplyCurrentAmps();
+    }
+    return amps;
+  }
+
+  @Override
+  public void setSupplyCurrentLimit(double amps) {
+    // Drive motors only, steering is part of the reserve
+    for (Module module : modules) {
+      module.setDriveSupplyCurrentLimit(amps / modules.length);
+    }
+  }
+
+  @Override
+  public double getThermalDerate() {
+    // Steering isn't budgeted, but a hot steer motor still backs off the drive, which is most of
+    // the load the steering fights
+    return Math.min(thermalModel.getDerate(), steerThermalModel.getDerate());
+  }
 }
@@ -4,7 +4,10 @@
 
 package frc.robot.utils.autoaim;
 
+import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
 
 /** Add your docs here. */
 public class AutoAim {
@@ -20,4 +23,47 @@ public class AutoAim {
       shotMap.put(i, new ShotData(Rotation2d.fromDegrees(5 * i), 100 * i, 90 * i, 0.1 * i));
     }
   }
+
+  /**
+   * Gets the pose at some time in the future, assuming constant velocity
+   *
+   * @param pose The current pose
+   * @param speedsFieldRelative The field relative speed to calculate from
+   * @param time time in seconds
+   * @return The future pose
+   */
+  public static Pose2d getLinearFuturePose(
+      Pose2d pose, ChassisSpeeds speedsFieldRelative, double time) {
+    // Translation and rotation are independent in the field frame, so integrate each directly
+    // instead of going through the robot frame
+    return new Pose2d(
+        pose.getX() + speedsFieldRelative.vxMetersPerSecond * time,
+        pose.getY() + speedsFieldRelative.vyMetersPerSecond * time,
+        Rotation2d.fromRadians(
+            pose.getRotation().getRadians() + speedsFieldRelative.omegaRadiansPerSecond * time));
+  }
+
+  /**
+   * Transforms the target pose by the robots velocity (assumes constant velocity)
+   *
+   * @param pose The current pose
+   * @param speeds The robot speeds
+   * @param target The target to shoot at
+   * @return The transformed pose
+   */
+  public static Pose2d getVirtualTarget(Pose2d pose, ChassisSpeeds speeds, Pose2d target) {
+    double distance =
+        getLinearFuturePose(pose, speeds, LOOKAHEAD_TIME_SECONDS)
+            .minus(target)
+            .getTranslation()
+            .getNorm();
+    double flightTime = shotMap.get(distance).getFlightTimeSeconds();
+
+    return target.transformBy(
+        new Transform2d(
+                speeds.vxMetersPerSecond * flightTime,
+                speeds.vyMetersPerSecond * flightTime,
+                target.getRotation())
+            .inverse());
+  }
 }
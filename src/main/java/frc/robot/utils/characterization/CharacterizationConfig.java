@@ -0,0 +1,118 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.characterization;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.RobotBase;
+import java.io.File;
+import java.io.IOException;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Characterization results stored in characterization.json in the deploy directory, keyed by
+ * mechanism name.
+ *
+ * <p>IOs read their gains from here at startup and characterization commands write new results
+ * back. On the robot the file is overwritten by the next deploy, so results written there should be
+ * copied into src/main/deploy, they are also logged when saved. In simulation and replay the deploy
+ * directory is the checked in src/main/deploy, so results are only kept in memory and logged there.
+ */
+public class CharacterizationConfig {
+  private static final File file =
+      new File(Filesystem.getDeployDirectory(), "characterization.json");
+  private static final ObjectMapper mapper = new ObjectMapper();
+  private static ObjectNode root = null;
+
+  /**
+   * Returns the saved gains for a mechanism.
+   *
+   * @param name The mechanism name
+   * @param defaults The gains to use if none have been saved
+   * @return The gains
+   */
+  public static FeedforwardGains getGains(String name, FeedforwardGains defaults) {
+    JsonNode node = load().get(name);
+    if (node == null) {
+      return defaults;
+    }
+    return new FeedforwardGains(
+        node.path("kS").asDouble(defaults.kS()),
+        node.path("kV").asDouble(defaults.kV()),
+        node.path("kA").asDouble(defaults.kA()),
+        node.path("kG").asDouble(defaults.kG()));
+  }
+
+  /**
+   * Saves the gains for a mechanism, keeping the rest of the file.
+   *
+   * @param name The mechanism name
+   * @param gains The gains to save
+   */
+  public static void saveGains(String name, FeedforwardGains gains) {
+    ObjectNode node = load().putObject(name);
+    node.put("kS", gains.kS());
+    node.put("kV", gains.kV());
+    node.put("kA", gains.kA());
+    node.put("kG", gains.kG());
+    write();
+  }
+
+  /**
+   * Returns a saved value.
+   *
+   * @param name The value name
+   * @param defaultValue The value to use if none has been saved
+   * @return The value
+   */
+  public static double getDouble(String name, double defaultValue) {
+    return load().path(name).asDouble(defaultValue);
+  }
+
+  /**
+   * Saves a value, keeping the rest of the file.
+   *
+   * @param name The value name
+   * @param value The value to save
+   */
+  public static void saveDouble(String name, double value) {
+    load().put(name, value);
+    write();
+  }
+
+  private static ObjectNode load() {
+    if (root == null) {
+      root = mapper.createObjectNode();
+      if (file.exists()) {
+        try {
+          JsonNode json = mapper.readTree(file);
+          if (json instanceof ObjectNode) {
+            root = (ObjectNode) json;
+          }
+        } catch (IOException e) {
+          DriverStation.reportError(
+              "Failed to read characterization config, using defaults", e.getStackTrace());
+        }
+      }
+    }
+    return root;
+  }
+
+  private static void write() {
+    // Sim and replay fits would overwrite the checked in file
+    Logger.recordOutput("Characterization/Written To File", RobotBase.isReal());
+    if (!RobotBase.isReal()) {
+      return;
+    }
+    try {
+      mapper.writerWithDefaultPrettyPrinter().writeValue(file, root);
+    } catch (IOException e) {
+      DriverStation.reportError("Failed to write characterization config", e.getStackTrace());
+    }
+  }
+}
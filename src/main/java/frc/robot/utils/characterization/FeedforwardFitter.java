@@ -0,0 +1,186 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.characterization;
+
+import edu.wpi.first.wpilibj.Timer;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Fits kS, kV, kA and optionally kG to samples collected while a SysId routine runs.
+ *
+ * <p>Fits volts = kS * sign(v) + kV * v + kA * a + kG * g by least squares, where g is 1 for an
+ * elevator and the cosine of the angle for an arm. Only the normal equations are kept, so each
+ * sample is a fixed amount of work and nothing has to be stored. Acceleration is the difference
+ * between consecutive velocity samples. Samples where the mechanism is barely moving are skipped
+ * since friction there is static, not the kinetic friction kS models.
+ */
+public class FeedforwardFitter {
+  /** How gravity loads the mechanism. */
+  public enum Gravity {
+    NONE,
+    // Constant, like an elevator
+    CONSTANT,
+    // Cosine of the position in rotations from horizontal, like an arm
+    COSINE
+  }
+
+  // Longer gaps between samples mean a new test started, so the acceleration is reset
+  private static final double MAX_SAMPLE_GAP_SECONDS = 0.1;
+  private static final int MIN_SAMPLES = 50;
+
+  private final String name;
+  private final Gravity gravity;
+  private final double minVelocity;
+  private final boolean save;
+  private final int size;
+  // Normal equations, X^T X and X^T y
+  private final double[] xtx = new double[16];
+  private final double[] xty = new double[4];
+  private final double[] row = new double[4];
+  private int sampleCount = 0;
+
+  private double lastVelocity = 0.0;
+  private double lastTimestamp = Double.NaN;
+
+  /**
+   * Creates a new FeedforwardFitter.
+   *
+   * @param name The mechanism name, used for logging and saving
+   * @param gravity How gravity loads the mechanism
+   * @param minVelocity Samples slower than this are skipped, in mechanism units per second
+   */
+  public FeedforwardFitter(String name, Gravity gravity, double minVelocity) {
+    this(name, gravity, minVelocity, true);
+  }
+
+  /**
+   * Creates a new FeedforwardFitter.
+   *
+   * @param name The mechanism name, used for logging and saving
+   * @param gravity How gravity loads the mechanism
+   * @param minVelocity Samples slower than this are skipped, in mechanism units per second
+   * @param save Whether to save the gains, false when the samples don't come from the hardware
+   */
+  public FeedforwardFitter(String name, Gravity gravity, double minVelocity, boolean save) {
+    this.name = name;
+    this.gravity = gravity;
+    this.minVelocity = minVelocity;
+    this.save = save;
+    size = gravity == Gravity.NONE ? 3 : 4;
+  }
+
+  /** Clears every sample, call before the routine starts. */
+  public void reset() {
+    for (int i = 0; i < xtx.length; i++) {
+      xtx[i] = 0.0;
+    }
+    for (int i = 0; i < xty.length; i++) {
+      xty[i] = 0.0;
+    }
+    sampleCount = 0;
+    lastTimestamp = Double.NaN;
+  }
+
+  /**
+   * Adds a sample, call once per loop while the routine runs.
+   *
+   * @param volts The voltage applied to the motor
+   * @param position The mechanism position, in rotations for an arm
+   * @param velocity The mechanism velocity
+   */
+  public void addSample(double volts, double position, double velocity) {
+    double timestamp = Timer.getFPGATimestamp();
+    double dt = timestamp - lastTimestamp;
+    double lastVelocity = this.lastVelocity;
+    this.lastVelocity = velocity;
+    lastTimestamp = timestamp;
+    if (!(dt > 0.0 && dt < MAX_SAMPLE_GAP_SECONDS) || Math.abs(velocity) < minVelocity) {
+      return;
+    }
+
+    row[0] = Math.signum(velocity);
+    row[1] = velocity;
+    row[2] = (velocity - lastVelocity) / dt;
+    if (gravity == Gravity.CONSTANT) {
+      row[3] = 1.0;
+    } else if (gravity == Gravity.COSINE) {
+      row[3] = Math.cos(2.0 * Math.PI * position);
+    }
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j < size; j++) {
+        xtx[i * 4 + j] += row[i] * row[j];
+      }
+      xty[i] += row[i] * volts;
+    }
+    sampleCount++;
+  }
+
+  /**
+   * Solves for the gains.
+   *
+   * @return The gains, or null if there weren't enough samples to fit them
+   */
+  public FeedforwardGains solve() {
+    if (sampleCount < MIN_SAMPLES) {
+      return null;
+    }
+    // Gaussian elimination with partial pivoting on a copy of the normal equations
+    double[] a = xtx.clone();
+    double[] b = xty.clone();
+    for (int col = 0; col < size; col++) {
+      int pivot = col;
+      for (int r = col + 1; r < size; r++) {
+        if (Math.abs(a[r * 4 + col]) > Math.abs(a[pivot * 4 + col])) {
+          pivot = r;
+        }
+      }
+      if (Math.abs(a[pivot * 4 + col]) < 1e-12) {
+        return null;
+      }
+      for (int c = 0; c < size; c++) {
+        double swap = a[col * 4 + c];
+        a[col * 4 + c] = a[pivot * 4 + c];
+        a[pivot * 4 + c] = swap;
+      }
+      double swap = b[col];
+      b[col] = b[pivot];
+      b[pivot] = swap;
+      for (int r = col + 1; r < size; r++) {
+        double factor = a[r * 4 + col] / a[col * 4 + col];
+        for (int c = col; c < size; c++) {
+          a[r * 4 + c] -= factor * a[col * 4 + c];
+        }
+        b[r] -= factor * b[col];
+      }
+    }
+    double[] x = new double[4];
+    for (int r = size - 1; r >= 0; r--) {
+      double sum = b[r];
+      for (int c = r + 1; c < size; c++) {
+        sum -= a[r * 4 + c] * x[c];
+      }
+      x[r] = sum / a[r * 4 + r];
+    }
+    return new FeedforwardGains(x[0], x[1], x[2], x[3]);
+  }
+
+  /** Solves for the gains, then logs them and saves them if the fit succeeded. */
+  public void finish() {
+    FeedforwardGains gains = solve();
+    Logger.recordOutput("Characterization/" + name + "/Samples", sampleCount);
+    if (gains == null) {
+      Logger.recordOutput("Characterization/" + name + "/Fit Succeeded", false);
+      return;
+    }
+    Logger.recordOutput("Characterization/" + name + "/Fit Succeeded", true);
+    Logger.recordOutput("Characterization/" + name + "/kS", gains.kS());
+    Logger.recordOutput("Characterization/" + name + "/kV", gains.kV());
+    Logger.recordOutput("Characterization/" + name + "/kA", gains.kA());
+    Logger.recordOutput("Characterization/" + name + "/kG", gains.kG());
+    if (save) {
+      CharacterizationConfig.saveGains(name, gains);
+    }
+  }
+}
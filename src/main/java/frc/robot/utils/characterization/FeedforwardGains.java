@@ -0,0 +1,8 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.characterization;
+
+/** Feedforward gains in volts per mechanism unit, as Phoenix Slot0 configs expect them. */
+public record FeedforwardGains(double kS, double kV, double kA, double kG) {}
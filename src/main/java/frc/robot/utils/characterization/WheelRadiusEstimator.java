@@ -0,0 +1,76 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.characterization;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Estimates the effective wheel radius while the robot spins in place.
+ *
+ * <p>Spinning in place, every wheel travels the gyro's change in yaw times the drive base radius,
+ * while turning through its drive angle in radians. Their ratio is the radius the wheels actually
+ * roll on, including tread wear and compression.
+ */
+public class WheelRadiusEstimator {
+  private final double driveBaseRadiusMeters;
+  private final double[] startWheelPositionsRad;
+  private double lastYawRad = 0.0;
+  private double yawDeltaRad = 0.0;
+  private double wheelDeltaRad = 0.0;
+
+  /**
+   * Creates a new WheelRadiusEstimator.
+   *
+   * @param driveBaseRadiusMeters The distance from the robot center to each module
+   * @param moduleCount The number of modules
+   */
+  public WheelRadiusEstimator(double driveBaseRadiusMeters, int moduleCount) {
+    this.driveBaseRadiusMeters = driveBaseRadiusMeters;
+    startWheelPositionsRad = new double[moduleCount];
+  }
+
+  /**
+   * Starts a new estimate.
+   *
+   * @param yawRad The gyro yaw
+   * @param wheelPositionsRad The drive position of each wheel, in radians of wheel rotation
+   */
+  public void reset(double yawRad, double[] wheelPositionsRad) {
+    lastYawRad = yawRad;
+    yawDeltaRad = 0.0;
+    wheelDeltaRad = 0.0;
+    System.arraycopy(wheelPositionsRad, 0, startWheelPositionsRad, 0, wheelPositionsRad.length);
+  }
+
+  /**
+   * Adds the motion since the last update.
+   *
+   * @param yawRad The gyro yaw
+   * @param wheelPositionsRad The drive position of each wheel, in radians of wheel rotation
+   */
+  public void update(double yawRad, double[] wheelPositionsRad) {
+    // Accumulate changes so the yaw can go past a full turn
+    yawDeltaRad += MathUtil.angleModulus(yawRad - lastYawRad);
+    lastYawRad = yawRad;
+    wheelDeltaRad = 0.0;
+    for (int i = 0; i < wheelPositionsRad.length; i++) {
+      wheelDeltaRad +=
+          Math.abs(wheelPositionsRad[i] - startWheelPositionsRad[i]) / wheelPositionsRad.length;
+    }
+  }
+
+  /** Returns the yaw turned since the reset, in radians. */
+  public double getYawDeltaRad() {
+    return yawDeltaRad;
+  }
+
+  /** Returns the estimated wheel radius in meters, or NaN before the wheels have turned. */
+  public double getWheelRadiusMeters() {
+    if (wheelDeltaRad < 1e-6) {
+      return Double.NaN;
+    }
+    return Math.abs(yawDeltaRad) * driveBaseRadiusMeters / wheelDeltaRad;
+  }
+}
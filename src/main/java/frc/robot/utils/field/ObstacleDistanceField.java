@@ -0,0 +1,241 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.field;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Signed distance field of the field obstacles, computed once from the PathPlanner navgrid.
+ *
+ * <p>Distances are positive in free space and negative inside obstacles. The distance and its
+ * gradient are stored as flat float arrays so lookups are O(1) and allocation free.
+ */
+public class ObstacleDistanceField {
+  // Distance from the robot center to the edge of the bumpers, plus some margin
+  public static final double ROBOT_CLEARANCE_METERS = 0.45;
+  // Distance from an obstacle at which we start limiting velocity towards it
+  public static final double INFLUENCE_DISTANCE_METERS = 0.75;
+
+  private final int rows;
+  private final int cols;
+  private final double cellSizeMeters;
+  private final float[] distance;
+  private final float[] gradientX;
+  private final float[] gradientY;
+
+  /**
+   * Builds a distance field from an occupancy grid.
+   *
+   * @param obstacles Occupancy grid indexed [row][col], where rows are along y and cols along x
+   * @param cellSizeMeters The side length of each cell
+   */
+  public ObstacleDistanceField(boolean[][] obstacles, double cellSizeMeters) {
+    this.rows = obstacles.length;
+    this.cols = rows > 0 ? obstacles[0].length : 0;
+    this.cellSizeMeters = cellSizeMeters;
+    this.distance = new float[rows * cols];
+    this.gradientX = new float[rows * cols];
+    this.gradientY = new float[rows * cols];
+
+    // Squared distances (in cells) to the nearest obstacle and to the nearest free cell
+    double[] toObstacle = squaredDistanceTransform(obstacles, true);
+    double[] toFree = squaredDistanceTransform(obstacles, false);
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < cols; c++) {
+        int i = index(r, c);
+        // Cell centers are half a cell away from the obstacle boundary
+        distance[i] =
+            (float)
+                (obstacles[r][c]
+                    ? -(Math.sqrt(toFree[i]) - 0.5) * cellSizeMeters
+                    : (Math.sqrt(toObstacle[i]) - 0.5) * cellSizeMeters);
+      }
+    }
+
+    // Central differences, falling back to one sided differences on the edges
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < cols; c++) {
+        int c0 = Math.max(c - 1, 0);
+        int c1 = Math.min(c + 1, cols - 1);
+        int r0 = Math.max(r - 1, 0);
+        int r1 = Math.min(r + 1, rows - 1);
+        double dx = c1 == c0 ? 0.0 : (distance[index(r, c1)] - distance[index(r, c0)]) / (c1 - c0);
+        double dy = r1 == r0 ? 0.0 : (distance[index(r1, c)] - distance[index(r0, c)]) / (r1 - r0);
+        double norm = Math.hypot(dx, dy);
+        gradientX[index(r, c)] = norm > 1e-9 ? (float) (dx / norm) : 0.0f;
+        gradientY[index(r, c)] = norm > 1e-9 ? (float) (dy / norm) : 0.0f;
+      }
+    }
+  }
+
+  /**
+   * Loads the navgrid from the deploy directory. If it can't be read, an empty field is returned so
+   * driver assist becomes a no-op instead of crashing robot code.
+   */
+  public static ObstacleDistanceField loadFromNavGrid() {
+    File file = new File(Filesystem.getDeployDirectory(), "pathplanner/navgrid.json");
+    try {
+      JsonNode json = new ObjectMapper().readTree(file);
+      JsonNode grid = json.get("grid");
+      boolean[][] obstacles = new boolean[grid.size()][];
+      for (int r = 0; r < grid.size(); r++) {
+        obstacles[r] = new boolean[grid.get(r).size()];
+        for (int c = 0; c < grid.get(r).size(); c++) {
+          obstacles[r][c] = grid.get(r).get(c).asBoolean();
+        }
+      }
+      return new ObstacleDistanceField(obstacles, json.get("nodeSizeMeters").asDouble());
+    } catch (IOException | NullPointerException e) {
+      DriverStation.reportError("Failed to load navgrid for obstacle avoidance", e.getStackTrace());
+      return new ObstacleDistanceField(new boolean[0][0], 1.0);
+    }
+  }
+
+  /** Returns the signed distance in meters from a field position to the closest obstacle. */
+  public double getDistance(double x, double y) {
+    return sample(distance, x, y, Double.POSITIVE_INFINITY);
+  }
+
+  /** Returns the x component of the unit vector pointing away from the closest obstacle. */
+  public double getGradientX(double x, double y) {
+    return sample(gradientX, x, y, 0.0);
+  }
+
+  /** Returns the y component of the unit vector pointing away from the closest obstacle. */
+  public double getGradientY(double x, double y) {
+    return sample(gradientY, x, y, 0.0);
+  }
+
+  /**
+   * Removes the part of a field relative velocity that points into a nearby obstacle. Motion
+   * tangent to the obstacle is untouched, so the robot slides along walls at full speed.
+   *
+   * @param position The robot position on the field
+   * @param speedsFieldRelative The requested field relative speeds
+   * @return The adjusted field relative speeds
+   */
+  public ChassisSpeeds assist(Translation2d position, ChassisSpeeds speedsFieldRelative) {
+    double x = position.getX();
+    double y = position.getY();
+    double clearance = getDistance(x, y) - ROBOT_CLEARANCE_METERS;
+    if (clearance >= INFLUENCE_DISTANCE_METERS) {
+      return speedsFieldRelative;
+    }
+    double nx = getGradientX(x, y);
+    double ny = getGradientY(x, y);
+    double towardsObstacle =
+        speedsFieldRelative.vxMetersPerSecond * nx + speedsFieldRelative.vyMetersPerSecond * ny;
+    if (towardsObstacle >= 0.0) {
+      // Already moving away
+      return speedsFieldRelative;
+    }
+    // Scale from no correction at the edge of the influence zone to a full stop at contact
+    double removed = 1.0 - MathUtil.clamp(clearance / INFLUENCE_DISTANCE_METERS, 0.0, 1.0);
+    return new ChassisSpeeds(
+        speedsFieldRelative.vxMetersPerSecond - removed * towardsObstacle * nx,
+        speedsFieldRelative.vyMetersPerSecond - removed * towardsObstacle * ny,
+        speedsFieldRelative.omegaRadiansPerSecond);
+  }
+
+  private int index(int row, int col) {
+    return row * cols + col;
+  }
+
+  /** Bilinearly interpolates a grid value at a field position, clamping to the grid edges. */
+  private double sample(float[] values, double x, double y, double fallback) {
+    if (rows == 0 || cols == 0) {
+      return fallback;
+    }
+    // Shift by half a cell so that integer coordinates land on cell centers
+    double gx = MathUtil.clamp(x / cellSizeMeters - 0.5, 0.0, cols - 1);
+    double gy = MathUtil.clamp(y / cellSizeMeters - 0.5, 0.0, rows - 1);
+    int c0 = (int) gx;
+    int r0 = (int) gy;
+    int c1 = Math.min(c0 + 1, cols - 1);
+    int r1 = Math.min(r0 + 1, rows - 1);
+    double tx = gx - c0;
+    double ty = gy - r0;
+    double bottom = values[index(r0, c0)] * (1.0 - tx) + values[index(r0, c1)] * tx;
+    double top = values[index(r1, c0)] * (1.0 - tx) + values[index(r1, c1)] * tx;
+    return bottom * (1.0 - ty) + top * ty;
+  }
+
+  /**
+   * Exact squared euclidean distance transform (Felzenszwalb and Huttenlocher), in cells.
+   *
+   * @param grid The occupancy grid
+   * @param target Which cell value to measure the distance to
+   */
+  private double[] squaredDistanceTransform(boolean[][] grid, boolean target) {
+    // Large enough to act as infinity without overflowing when squared distances are added
+    final double inf = 1e20;
+    double[] result = new double[rows * cols];
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < cols; c++) {
+        result[index(r, c)] = grid[r][c] == target ? 0.0 : inf;
+      }
+    }
+
+    int n = Math.max(rows, cols);
+    double[] f = new double[n];
+    double[] d = new double[n];
+    int[] v = new int[n];
+    double[] z = new double[n + 1];
+    // Columns first, then rows
+    for (int c = 0; c < cols; c++) {
+      for (int r = 0; r < rows; r++) {
+        f[r] = result[index(r, c)];
+      }
+      transform1d(f, rows, d, v, z);
+      for (int r = 0; r < rows; r++) {
+        result[index(r, c)] = d[r];
+      }
+    }
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < cols; c++) {
+        f[c] = result[index(r, c)];
+      }
+      transform1d(f, cols, d, v, z);
+      for (int c = 0; c < cols; c++) {
+        result[index(r, c)] = d[c];
+      }
+    }
+    return result;
+  }
+
+  /** One dimensional squared distance transform of a sampled function, via lower envelope. */
+  private static void transform1d(double[] f, int n, double[] d, int[] v, double[] z) {
+    int k = 0;
+    v[0] = 0;
+    z[0] = Double.NEGATIVE_INFINITY;
+    z[1] = Double.POSITIVE_INFINITY;
+    for (int q = 1; q < n; q++) {
+      double s = ((f[q] + q * q) - (f[v[k]] + v[k] * v[k])) / (2.0 * q - 2.0 * v[k]);
+      while (s <= z[k]) {
+        k--;
+        s = ((f[q] + q * q) - (f[v[k]] + v[k] * v[k])) / (2.0 * q - 2.0 * v[k]);
+      }
+      k++;
+      v[k] = q;
+      z[k] = s;
+      z[k + 1] = Double.POSITIVE_INFINITY;
+    }
+    k = 0;
+    for (int q = 0; q < n; q++) {
+      while (z[k + 1] < q) {
+        k++;
+      }
+      d[q] = (q - v[k]) * (q - v[k]) + f[v[k]];
+    }
+  }
+}
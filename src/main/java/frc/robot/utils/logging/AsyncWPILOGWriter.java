@@ -0,0 +1,141 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.logging;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.littletonrobotics.junction.LogDataReceiver;
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.Logger;
+import org.littletonrobotics.junction.wpilog.WPILOGWriter;
+
+/**
+ * Runs a WPILOGWriter on its own thread behind a bounded queue.
+ *
+ * <p>AdvantageKit hands every receiver its tables from one shared thread, with a blocking put into
+ * a shared queue. A slow USB stick would back that queue up and eventually stall the main loop.
+ * This receiver only ever offers into its own queue, so the worst case is dropped log cycles, which
+ * are counted, instead of overruns.
+ *
+ * <p>WPILOGWriter appends each cycle to a DataLog in memory, and the DataLog writes to disk on its
+ * own thread, so the latency logged here is the time to append a batch, not to flush it to disk.
+ */
+public class AsyncWPILOGWriter implements LogDataReceiver {
+  // About 10 seconds of cycles at 50 Hz
+  public static final int QUEUE_CAPACITY = 500;
+  // Upper bound on cycles written per wakeup of the writer thread
+  public static final int MAX_BATCH_SIZE = 50;
+
+  private final WPILOGWriter writer;
+  private final BlockingQueue<LogTable> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final Thread thread;
+
+  private final AtomicLong droppedCycles = new AtomicLong();
+  private final AtomicLong writtenCycles = new AtomicLong();
+  private final AtomicLong lastBatchSize = new AtomicLong();
+  private final AtomicLong lastAppendMicros = new AtomicLong();
+  private final AtomicLong maxAppendMicros = new AtomicLong();
+
+  private volatile boolean running = false;
+
+  /**
+   * Creates a new AsyncWPILOGWriter.
+   *
+   * @param path Path to log file or folder, passed to WPILOGWriter
+   */
+  public AsyncWPILOGWriter(String path) {
+    writer = new WPILOGWriter(path);
+    thread = new Thread(this::run, "AsyncWPILOGWriter");
+    thread.setDaemon(true);
+  }
+
+  @Override
+  public void start() {
+    writer.start();
+    running = true;
+    thread.start();
+  }
+
+  @Override
+  public void end() {
+    running = false;
+    thread.interrupt();
+    try {
+      thread.join(1000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    writer.end();
+  }
+
+  @Override
+  public void putTable(LogTable table) {
+    // Tables are already copies made for the receivers, so they are safe to hold onto
+    if (!queue.offer(table)) {
+      droppedCycles.incrementAndGet();
+    }
+  }
+
+  private void run() {
+    List<LogTable> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    while (running) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        break;
+      }
+      queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+      writeBatch(batch);
+    }
+
+    // Write out whatever made it into the queue before shutdown
+    queue.drainTo(batch);
+    writeBatch(batch);
+  }
+
+  private void writeBatch(List<LogTable> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    long start = System.nanoTime();
+    try {
+      for (LogTable table : batch) {
+        writer.putTable(table);
+      }
+    } catch (Exception e) {
+      DriverStation.reportError("Failed to write log batch", e.getStackTrace());
+    }
+    long micros = (System.nanoTime() - start) / 1000;
+    writtenCycles.addAndGet(batch.size());
+    lastBatchSize.set(batch.size());
+    lastAppendMicros.set(micros);
+    maxAppendMicros.accumulateAndGet(micros, Math::max);
+    batch.clear();
+  }
+
+  /** Returns the number of cycles waiting to be written. */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  /** Returns the number of cycles dropped because the queue was full. */
+  public long getDroppedCycles() {
+    return droppedCycles.get();
+  }
+
+  /** Logs queue and writer metrics. Call from the main loop. */
+  public void logMetrics() {
+    Logger.recordOutput("Logging/Queue Depth", getQueueDepth());
+    Logger.recordOutput("Logging/Dropped Cycles", getDroppedCycles());
+    Logger.recordOutput("Logging/Written Cycles", writtenCycles.get());
+    Logger.recordOutput("Logging/Last Batch Size", lastBatchSize.get());
+    Logger.recordOutput("Logging/Last Batch Append Latency (ms)", lastAppendMicros.get() / 1000.0);
+    Logger.recordOutput("Logging/Max Batch Append Latency (ms)", maxAppendMicros.get() / 1000.0);
+  }
+}
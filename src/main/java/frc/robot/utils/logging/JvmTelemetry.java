@@ -0,0 +1,122 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.logging;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Logs heap usage, garbage collection, main thread allocation rate and CPU load.
+ *
+ * <p>Totals are logged once a second. Collection counts are checked every loop, which is cheap, so
+ * that a collection can be matched with the loop it happened in. When that loop overran, the pause
+ * is logged as a GC overrun. Must be created and updated from the main robot thread.
+ */
+public class JvmTelemetry {
+  public static final int LOG_PERIOD_LOOPS = 50;
+
+  private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+  private final List<GarbageCollectorMXBean> collectors =
+      ManagementFactory.getGarbageCollectorMXBeans();
+  private final com.sun.management.ThreadMXBean threads;
+  private final com.sun.management.OperatingSystemMXBean os;
+
+  private final long[] lastCollectionCounts;
+  private final long[] lastCollectionTimesMs;
+  private long lastAllocatedBytes = 0;
+  private long lastAllocationSampleNanos = System.nanoTime();
+  private long gcOverruns = 0;
+  private int loopCount = 0;
+
+  public JvmTelemetry() {
+    // The com.sun.management extensions are available on HotSpot based JVMs, including the rio's
+    threads =
+        ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()
+            ? bean
+            : null;
+    if (threads != null) {
+      threads.setThreadAllocatedMemoryEnabled(true);
+      lastAllocatedBytes = threads.getCurrentThreadAllocatedBytes();
+    }
+    os =
+        ManagementFactory.getOperatingSystemMXBean()
+                instanceof com.sun.management.OperatingSystemMXBean bean
+            ? bean
+            : null;
+
+    lastCollectionCounts = new long[collectors.size()];
+    lastCollectionTimesMs = new long[collectors.size()];
+    for (int i = 0; i < collectors.size(); i++) {
+      lastCollectionCounts[i] = collectors.get(i).getCollectionCount();
+      lastCollectionTimesMs[i] = collectors.get(i).getCollectionTime();
+    }
+  }
+
+  /** Checks for collections in the last loop and logs totals when due. Call once per loop. */
+  public void periodic() {
+    boolean overran = LoopProfiler.didLastLoopOverrun();
+    for (int i = 0; i < collectors.size(); i++) {
+      GarbageCollectorMXBean collector = collectors.get(i);
+      long count = collector.getCollectionCount();
+      if (count == lastCollectionCounts[i]) {
+        continue;
+      }
+      long timeMs = collector.getCollectionTime();
+      if (overran) {
+        gcOverruns++;
+        Logger.recordOutput(
+            "JVM/Last GC Overrun",
+            String.format(
+                "%s: %d collections, %d ms pause, %.1f ms loop",
+                collector.getName(),
+                count - lastCollectionCounts[i],
+                timeMs - lastCollectionTimesMs[i],
+                LoopProfiler.getLastLoopSeconds() * 1000.0));
+        Logger.recordOutput("JVM/GC Overruns", gcOverruns);
+      }
+      lastCollectionCounts[i] = count;
+      lastCollectionTimesMs[i] = timeMs;
+    }
+
+    loopCount++;
+    if (loopCount % LOG_PERIOD_LOOPS == 0) {
+      logTotals();
+    }
+  }
+
+  private void logTotals() {
+    MemoryUsage heap = memory.getHeapMemoryUsage();
+    Logger.recordOutput("JVM/Heap Used (MB)", heap.getUsed() / 1e6);
+    Logger.recordOutput("JVM/Heap Committed (MB)", heap.getCommitted() / 1e6);
+    Logger.recordOutput("JVM/Heap Max (MB)", heap.getMax() / 1e6);
+    Logger.recordOutput("JVM/Non Heap Used (MB)", memory.getNonHeapMemoryUsage().getUsed() / 1e6);
+
+    for (int i = 0; i < collectors.size(); i++) {
+      String prefix = "JVM/GC/" + collectors.get(i).getName();
+      Logger.recordOutput(prefix + "/Count", lastCollectionCounts[i]);
+      Logger.recordOutput(prefix + "/Time (ms)", lastCollectionTimesMs[i]);
+    }
+
+    if (threads != null) {
+      long allocatedBytes = threads.getCurrentThreadAllocatedBytes();
+      long now = System.nanoTime();
+      Logger.recordOutput(
+          "JVM/Main Thread Allocation Rate (MB per s)",
+          (allocatedBytes - lastAllocatedBytes) / 1e6 / ((now - lastAllocationSampleNanos) / 1e9));
+      lastAllocatedBytes = allocatedBytes;
+      lastAllocationSampleNanos = now;
+    }
+
+    if (os != null) {
+      Logger.recordOutput("JVM/Process CPU Load", os.getProcessCpuLoad());
+      Logger.recordOutput("JVM/System CPU Load", os.getCpuLoad());
+    }
+  }
+}
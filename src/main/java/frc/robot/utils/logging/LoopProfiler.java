@@ -0,0 +1,213 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.logging;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Times subsystem periodics, command executes and trigger conditions, and logs rolling statistics
+ * for each of them.
+ *
+ * <p>Subsystems time themselves with a {@link Section}, and trigger conditions are wrapped with
+ * {@link #timed(String, BooleanSupplier)}. Command executes are timed from the scheduler hooks,
+ * which only fire after a command runs, so each command is charged with the time since the previous
+ * profiled event. That includes a little scheduler overhead but needs no changes to the commands.
+ * Each command gets its own section, so commands sharing a name, like unnamed groups, are numbered
+ * in the order they first run. Name bound commands with withName to keep them recognizable.
+ *
+ * <p>p50, p99 and max over the last few seconds are logged about once a second. When a loop
+ * overruns, the slowest entries of that loop are logged as the top offenders.
+ */
+public class LoopProfiler {
+  public static final double LOOP_PERIOD_SECONDS = 0.02;
+  // 5 seconds of loops
+  public static final int WINDOW_SIZE = 250;
+  // Compute and log statistics once a second
+  public static final int STATS_PERIOD_LOOPS = 50;
+  public static final int TOP_OFFENDERS = 5;
+
+  /** A timed piece of code with its own rolling window of execution times. */
+  public static class Section {
+    private final String name;
+    private final long[] window = new long[WINDOW_SIZE];
+    private int windowCount = 0;
+    private int windowIndex = 0;
+    private long startNanos = 0;
+    private long loopNanos = 0;
+    private boolean ranThisLoop = false;
+
+    private Section(String name) {
+      this.name = name;
+    }
+
+    /** Starts timing this section. */
+    public void start() {
+      startNanos = System.nanoTime();
+    }
+
+    /** Stops timing this section, adding the time since start to this loop. */
+    public void stop() {
+      long now = System.nanoTime();
+      add(now - startNanos);
+      lastMarkNanos = now;
+    }
+
+    private void add(long nanos) {
+      loopNanos += nanos;
+      ranThisLoop = true;
+    }
+
+    private void endLoop() {
+      if (ranThisLoop) {
+        window[windowIndex] = loopNanos;
+        windowIndex = (windowIndex + 1) % WINDOW_SIZE;
+        windowCount = Math.min(windowCount + 1, WINDOW_SIZE);
+      }
+      loopNanos = 0;
+      ranThisLoop = false;
+    }
+
+    private void logStatistics() {
+      if (windowCount == 0) {
+        return;
+      }
+      System.arraycopy(window, 0, scratch, 0, windowCount);
+      Arrays.sort(scratch, 0, windowCount);
+      Logger.recordOutput("Profiler/" + name + "/P50 (ms)", percentileMillis(0.5));
+      Logger.recordOutput("Profiler/" + name + "/P99 (ms)", percentileMillis(0.99));
+      Logger.recordOutput("Profiler/" + name + "/Max (ms)", scratch[windowCount - 1] / 1e6);
+    }
+
+    private double percentileMillis(double percentile) {
+      int index = (int) Math.ceil(percentile * windowCount) - 1;
+      return scratch[Math.max(index, 0)] / 1e6;
+    }
+  }
+
+  private static final Map<String, Section> sections = new HashMap<>();
+  private static final List<Section> sectionList = new ArrayList<>();
+  private static final Map<Command, Section> commandSections = new IdentityHashMap<>();
+  private static final long[] scratch = new long[WINDOW_SIZE];
+
+  private static long loopStartNanos = 0;
+  private static long lastMarkNanos = 0;
+  private static double lastLoopSeconds = 0.0;
+  private static int loopCount = 0;
+
+  /**
+   * Returns the section with this name, creating it if needed.
+   *
+   * @param name The name to log the section under
+   */
+  public static Section section(String name) {
+    return sections.computeIfAbsent(
+        name,
+        (key) -> {
+          Section section = new Section(key);
+          sectionList.add(section);
+          return section;
+        });
+  }
+
+  /** Returns a new section, numbering the name if it is already taken. */
+  private static Section uniqueSection(String name) {
+    String uniqueName = name;
+    for (int i = 2; sections.containsKey(uniqueName); i++) {
+      uniqueName = name + " " + i;
+    }
+    return section(uniqueName);
+  }
+
+  /**
+   * Wraps a trigger condition so its evaluations are timed.
+   *
+   * @param name The name to log the condition under, prefixed with Triggers/ and numbered if taken
+   * @param condition The condition to time
+   */
+  public static BooleanSupplier timed(String name, BooleanSupplier condition) {
+    Section section = uniqueSection("Triggers/" + name);
+    return () -> {
+      section.start();
+      boolean value = condition.getAsBoolean();
+      section.stop();
+      return value;
+    };
+  }
+
+  /** Times command executes using the scheduler hooks. Call once after subsystems are created. */
+  public static void registerCommandHooks() {
+    CommandScheduler scheduler = CommandScheduler.getInstance();
+    // Initialize and end run inside trigger polling and cancels, so only use them as marks
+    scheduler.onCommandInitialize((command) -> lastMarkNanos = System.nanoTime());
+    scheduler.onCommandFinish((command) -> lastMarkNanos = System.nanoTime());
+    scheduler.onCommandInterrupt((command) -> lastMarkNanos = System.nanoTime());
+    scheduler.onCommandExecute(
+        (command) -> {
+          long now = System.nanoTime();
+          commandSections
+              .computeIfAbsent(command, (key) -> uniqueSection("Commands/" + key.getName()))
+              .add(now - lastMarkNanos);
+          lastMarkNanos = now;
+        });
+  }
+
+  /** Returns the duration of the last profiled loop in seconds. */
+  public static double getLastLoopSeconds() {
+    return lastLoopSeconds;
+  }
+
+  /** Returns whether the last profiled loop took longer than the loop period. */
+  public static boolean didLastLoopOverrun() {
+    return lastLoopSeconds > LOOP_PERIOD_SECONDS;
+  }
+
+  /** Marks the start of the profiled part of the loop. */
+  public static void beginLoop() {
+    loopStartNanos = System.nanoTime();
+    lastMarkNanos = loopStartNanos;
+  }
+
+  /** Marks the end of the profiled part of the loop and logs statistics when they are due. */
+  public static void endLoop() {
+    double loopSeconds = (System.nanoTime() - loopStartNanos) / 1e9;
+    lastLoopSeconds = loopSeconds;
+    Logger.recordOutput("Profiler/Loop Time (ms)", loopSeconds * 1000.0);
+
+    if (loopSeconds > LOOP_PERIOD_SECONDS) {
+      // Only allocates on overruns, which are already slow
+      Section[] slowest =
+          sectionList.stream()
+              .filter((section) -> section.ranThisLoop)
+              .sorted((a, b) -> Long.compare(b.loopNanos, a.loopNanos))
+              .limit(TOP_OFFENDERS)
+              .toArray(Section[]::new);
+      String[] offenders = new String[slowest.length];
+      for (int i = 0; i < slowest.length; i++) {
+        offenders[i] = String.format("%s: %.2f ms", slowest[i].name, slowest[i].loopNanos / 1e6);
+      }
+      Logger.recordOutput("Profiler/Last Overrun/Loop Time (ms)", loopSeconds * 1000.0);
+      Logger.recordOutput("Profiler/Last Overrun/Offenders", offenders);
+    }
+
+    for (Section section : sectionList) {
+      section.endLoop();
+    }
+    loopCount++;
+    if (loopCount % STATS_PERIOD_LOOPS == 0) {
+      for (Section section : sectionList) {
+        section.logStatistics();
+      }
+    }
+  }
+}
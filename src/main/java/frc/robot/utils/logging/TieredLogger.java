@@ -0,0 +1,126 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.logging;
+
+import edu.wpi.first.util.WPISerializable;
+import edu.wpi.first.util.struct.StructSerializable;
+import edu.wpi.first.wpilibj.smartdashboard.Mechanism2d;
+import org.littletonrobotics.junction.Logger;
+import org.littletonrobotics.junction.networktables.LoggedDashboardChooser;
+
+/**
+ * Wraps Logger.recordOutput with a logging level and per key decimation.
+ *
+ * <p>Outputs at or below the active level are logged every loop. Outputs above it are sampled at a
+ * lower rate instead of dropped, so a competition log still has the data, just thinner. The active
+ * level is picked from the dashboard and is itself a logged input, so replay stays deterministic.
+ */
+public class TieredLogger {
+  public static enum Level {
+    // Always useful, logged every loop
+    COMPETITION,
+    // Useful when debugging, sampled at DEBUG_RATE_HZ in competition
+    DEBUG,
+    // Only useful while tuning, sampled at TUNING_RATE_HZ otherwise
+    TUNING
+  }
+
+  public static final double LOOP_FREQUENCY_HZ = 50.0;
+  public static final double DEBUG_RATE_HZ = 10.0;
+  public static final double TUNING_RATE_HZ = 5.0;
+
+  private static final LoggedDashboardChooser<Level> levelChooser =
+      new LoggedDashboardChooser<>("Logging Level");
+
+  static {
+    levelChooser.addDefaultOption("Competition", Level.COMPETITION);
+    levelChooser.addOption("Debug", Level.DEBUG);
+    levelChooser.addOption("Tuning", Level.TUNING);
+  }
+
+  private static Level activeLevel = Level.COMPETITION;
+  private static long cycle = 0;
+
+  /** Advances the decimation counter and reads the active level. Call once per loop. */
+  public static void periodic() {
+    cycle++;
+    Level selected = levelChooser.get();
+    activeLevel = selected == null ? Level.COMPETITION : selected;
+  }
+
+  /** Returns the currently selected logging level. */
+  public static Level getLevel() {
+    return activeLevel;
+  }
+
+  /**
+   * Returns whether an output should be logged this loop. Use this directly to skip computing
+   * values that are expensive to produce.
+   *
+   * @param level The level of the output
+   * @param key The output key, used to spread decimated outputs across loops
+   */
+  public static boolean shouldLog(Level level, String key) {
+    if (level.ordinal() <= activeLevel.ordinal()) {
+      return true;
+    }
+    return shouldLog(key, level == Level.DEBUG ? DEBUG_RATE_HZ : TUNING_RATE_HZ);
+  }
+
+  /**
+   * Returns whether an output decimated to a fixed rate should be logged this loop.
+   *
+   * @param key The output key, used to spread decimated outputs across loops
+   * @param rateHz The rate to log the output at
+   */
+  public static boolean shouldLog(String key, double rateHz) {
+    long period = Math.max(1, Math.round(LOOP_FREQUENCY_HZ / rateHz));
+    // Offset by the key hash so decimated outputs don't all land on the same loop
+    return (cycle + (key.hashCode() & 0x7fffffff)) % period == 0;
+  }
+
+  public static void recordOutput(Level level, String key, double value) {
+    if (shouldLog(level, key)) {
+      Logger.recordOutput(key, value);
+    }
+  }
+
+  public static void recordOutput(Level level, String key, double[] value) {
+    if (shouldLog(level, key)) {
+      Logger.recordOutput(key, value);
+    }
+  }
+
+  public static void recordOutput(Level level, String key, boolean value) {
+    if (shouldLog(level, key)) {
+      Logger.recordOutput(key, value);
+    }
+  }
+
+  public static void recordOutput(Level level, String key, String value) {
+    if (shouldLog(level, key)) {
+      Logger.recordOutput(key, value);
+    }
+  }
+
+  public static void recordOutput(Level level, String key, Mechanism2d value) {
+    if (shouldLog(level, key)) {
+      Logger.recordOutput(key, value);
+    }
+  }
+
+  public static <T extends WPISerializable> void recordOutput(Level level, String key, T value) {
+    if (shouldLog(level, key)) {
+      Logger.recordOutput(key, value);
+    }
+  }
+
+  public static <T extends StructSerializable> void recordOutput(
+      Level level, String key, T[] value) {
+    if (shouldLog(level, key)) {
+      Logger.recordOutput(key, value);
+    }
+  }
+}
@@ -0,0 +1,175 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.phoenix;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.CANBus;
+import com.ctre.phoenix6.hardware.ParentDevice;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.subsystems.swerve.Module;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Sets status signal update rates from the robot mode and estimates the load they put on each CAN
+ * bus.
+ *
+ * <p>IOs register their signals with a {@link SignalClass}, and each class has a rate per {@link
+ * Profile}. Rates are only sent when the profile changes, without waiting for the devices to
+ * acknowledge, so a mode change doesn't stall the loop.
+ *
+ * <p>The estimate assumes every signal takes its own frame of about 130 bits, which is a classic
+ * CAN frame with an 8 byte payload and typical bit stuffing. Phoenix packs several signals into
+ * some frames, so this is an upper bound, logged next to the utilization the bus reports.
+ */
+public class CANBusBudget {
+  public static final double BITS_PER_FRAME = 130.0;
+  public static final double BUS_BITS_PER_SECOND = 1e6;
+  // Log measured utilization once a second
+  public static final int MEASURE_PERIOD_LOOPS = 50;
+
+  /** Robot states with their own set of signal rates. */
+  public enum Profile {
+    DISABLED,
+    AUTO,
+    TELEOP,
+    // Teleop while lining up a speaker shot
+    AIMING
+  }
+
+  /** Kinds of signals, with their rate in Hz for each profile in Profile order. */
+  public enum SignalClass {
+    // Read by PhoenixOdometryThread, never changed but counted in the load
+    ODOMETRY(
+        Module.ODOMETRY_FREQUENCY_HZ,
+        Module.ODOMETRY_FREQUENCY_HZ,
+        Module.ODOMETRY_FREQUENCY_HZ,
+        Module.ODOMETRY_FREQUENCY_HZ),
+    // Positions and velocities used for control
+    STATE(20.0, 50.0, 50.0, 50.0),
+    // State that aiming depends on, sent faster so the latched values are fresher
+    AIM_STATE(20.0, 100.0, 50.0, 100.0),
+    // Voltages and currents
+    TELEMETRY(4.0, 50.0, 50.0, 50.0),
+    // Phoenix doesn't go slower than 4 Hz without disabling the signal
+    TEMPERATURE(4.0, 4.0, 4.0, 4.0);
+
+    private final double[] ratesHz;
+
+    SignalClass(double... ratesHz) {
+      this.ratesHz = ratesHz;
+    }
+
+    public double getRateHz(Profile profile) {
+      return ratesHz[profile.ordinal()];
+    }
+  }
+
+  private static class Registration {
+    private final String bus;
+    private final SignalClass signalClass;
+    private final BaseStatusSignal[] signals;
+
+    private Registration(String bus, SignalClass signalClass, BaseStatusSignal[] signals) {
+      this.bus = bus;
+      this.signalClass = signalClass;
+      this.signals = signals;
+    }
+  }
+
+  private static final List<Registration> registrations = new ArrayList<>();
+  private static final Map<String, Double> estimatedUtilization = new LinkedHashMap<>();
+  private static Profile profile = null;
+  private static int loopCount = 0;
+
+  /**
+   * Registers signals to have their rates managed.
+   *
+   * @param device The device the signals belong to, used to find its bus
+   * @param signalClass The rates to use for these signals
+   * @param signals The signals to register
+   */
+  public static void register(
+      ParentDevice device, SignalClass signalClass, BaseStatusSignal... signals) {
+    registrations.add(new Registration(device.getNetwork(), signalClass, signals));
+    estimatedUtilization.putIfAbsent(device.getNetwork(), 0.0);
+  }
+
+  /**
+   * Applies the profile for the current mode if it changed and logs bus utilization. Call once per
+   * loop.
+   *
+   * @param aiming Whether the robot is lining up a speaker shot
+   */
+  public static void periodic(boolean aiming) {
+    Profile newProfile;
+    if (DriverStation.isDisabled()) {
+      newProfile = Profile.DISABLED;
+    } else if (aiming) {
+      newProfile = Profile.AIMING;
+    } else if (DriverStation.isAutonomous()) {
+      newProfile = Profile.AUTO;
+    } else {
+      newProfile = Profile.TELEOP;
+    }
+    if (newProfile != profile) {
+      apply(newProfile);
+    }
+
+    loopCount++;
+    if (loopCount % MEASURE_PERIOD_LOOPS == 0) {
+      for (Map.Entry<String, Double> entry : estimatedUtilization.entrySet()) {
+        String prefix = "CAN/" + busLabel(entry.getKey());
+        Logger.recordOutput(prefix + "/Estimated Utilization", entry.getValue());
+        Logger.recordOutput(prefix + "/Measured Utilization", measureUtilization(entry.getKey()));
+      }
+      Logger.recordOutput(
+          "CAN/Suppressed Control Requests", ControlDeduplicator.getSuppressedCount());
+    }
+  }
+
+  /** Returns the profile currently applied. */
+  public static Profile getProfile() {
+    return profile;
+  }
+
+  private static void apply(Profile newProfile) {
+    profile = newProfile;
+    estimatedUtilization.replaceAll((bus, utilization) -> 0.0);
+    for (Registration registration : registrations) {
+      double rateHz = registration.signalClass.getRateHz(newProfile);
+      for (BaseStatusSignal signal : registration.signals) {
+        if (registration.signalClass != SignalClass.ODOMETRY) {
+          // A timeout of 0 sends the new rate without waiting for a response
+          signal.setUpdateFrequency(rateHz, 0.0);
+        }
+      }
+      estimatedUtilization.merge(
+          registration.bus,
+          registration.signals.length * rateHz * BITS_PER_FRAME / BUS_BITS_PER_SECOND,
+          Double::sum);
+    }
+    Logger.recordOutput("CAN/Profile", newProfile.name());
+  }
+
+  private static double measureUtilization(String bus) {
+    if (isRioBus(bus)) {
+      return RobotController.getCANStatus().percentBusUtilization;
+    }
+    return CANBus.getStatus(bus).BusUtilization;
+  }
+
+  private static boolean isRioBus(String bus) {
+    return bus.isEmpty() || bus.equals("rio");
+  }
+
+  private static String busLabel(String bus) {
+    return isRioBus(bus) ? "rio" : bus;
+  }
+}
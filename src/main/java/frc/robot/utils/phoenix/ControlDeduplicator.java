@@ -0,0 +1,74 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.phoenix;
+
+import com.ctre.phoenix6.controls.ControlRequest;
+import com.ctre.phoenix6.hardware.TalonFX;
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Skips sending a control request to a motor when it matches the last one sent.
+ *
+ * <p>IOs keep one control request object per control mode, so a request is the same as the last one
+ * when it is the same object with the same setpoint. The request is still resent once the
+ * keep-alive interval passes, so a motor never goes long without hearing from the robot. Phoenix
+ * also keeps sending the active request at its update frequency in the background, which is what
+ * the motor's control timeout watches.
+ */
+public class ControlDeduplicator {
+  public static final double DEFAULT_KEEP_ALIVE_SECONDS = 0.1;
+
+  private static long suppressedCount = 0;
+
+  private final TalonFX motor;
+  private final long keepAliveMicros;
+
+  private ControlRequest lastRequest = null;
+  private double lastValue = Double.NaN;
+  private long lastSentMicros = 0;
+
+  /**
+   * Creates a new ControlDeduplicator with the default keep-alive interval.
+   *
+   * @param motor The motor to send requests to
+   */
+  public ControlDeduplicator(TalonFX motor) {
+    this(motor, DEFAULT_KEEP_ALIVE_SECONDS);
+  }
+
+  /**
+   * Creates a new ControlDeduplicator.
+   *
+   * @param motor The motor to send requests to
+   * @param keepAliveSeconds The longest time to go without resending an unchanged request
+   */
+  public ControlDeduplicator(TalonFX motor, double keepAliveSeconds) {
+    this.motor = motor;
+    this.keepAliveMicros = (long) (keepAliveSeconds * 1e6);
+  }
+
+  /**
+   * Sends a control request unless it matches the last request sent.
+   *
+   * @param request The request, already updated with its setpoint
+   * @param value The setpoint of the request, used to compare it with the last one
+   */
+  public void setControl(ControlRequest request, double value) {
+    long now = RobotController.getFPGATime();
+    if (request == lastRequest && value == lastValue && now - lastSentMicros < keepAliveMicros) {
+      suppressedCount++;
+      return;
+    }
+    motor.setControl(request);
+    lastRequest = request;
+    lastValue = value;
+    lastSentMicros = now;
+  }
+
+  /** Returns the number of requests skipped across all motors. */
+  public static long getSuppressedCount() {
+    return suppressedCount;
+  }
+}
@@ -0,0 +1,214 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.phoenix;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.hardware.ParentDevice;
+import edu.wpi.first.wpilibj.RobotController;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Collects the status signals read by the IO implementations and acquires them off the main thread.
+ *
+ * <p>IOs register their signals once when constructed. Once {@link #start()} is called, an
+ * acquisition thread refreshes every registered signal, with one batched refresh per CAN bus, just
+ * before the main loop wakes. It copies the values into a timestamped snapshot and swaps it with
+ * the published one, so a slow bus only delays the acquisition thread. {@link #latch()} copies the
+ * latest snapshot at the start of the loop, and updateInputs reads values from it with {@link
+ * #getValue(BaseStatusSignal)}. Those values still go through processInputs, so replay is
+ * unchanged. Without the thread, latch refreshes the signals itself.
+ *
+ * <p>High frequency odometry signals stay with PhoenixOdometryThread and shouldn't be registered
+ * here.
+ */
+public class PhoenixSignalRegistry {
+  public static final double LOOP_PERIOD_SECONDS = 0.02;
+  // How long before the expected loop start to begin acquiring
+  public static final double ACQUISITION_LEAD_SECONDS = 0.003;
+
+  /** Values of every registered signal from one acquisition. */
+  private static class Snapshot {
+    private final double[] values;
+    private final boolean[] good;
+    private final StatusCode[] busStatus;
+    private long timestampMicros = 0;
+    private long sequence = 0;
+
+    private Snapshot(int signalCount, int busCount) {
+      values = new double[signalCount];
+      good = new boolean[signalCount];
+      busStatus = new StatusCode[busCount];
+      Arrays.fill(busStatus, StatusCode.OK);
+    }
+
+    private void copyFrom(Snapshot other) {
+      System.arraycopy(other.values, 0, values, 0, values.length);
+      System.arraycopy(other.good, 0, good, 0, good.length);
+      System.arraycopy(other.busStatus, 0, busStatus, 0, busStatus.length);
+      timestampMicros = other.timestampMicros;
+      sequence = other.sequence;
+    }
+  }
+
+  private static final Map<String, List<BaseStatusSignal>> signalsByBus = new LinkedHashMap<>();
+  private static final Map<BaseStatusSignal, Integer> signalIndices = new IdentityHashMap<>();
+  private static BaseStatusSignal[][] busSignals = new BaseStatusSignal[0][];
+  // Index into the snapshot arrays of the first signal of each bus
+  private static int[] busOffsets = new int[0];
+  private static String[] busNames = new String[0];
+
+  private static final Object publishLock = new Object();
+  // Written only by the acquiring thread
+  private static Snapshot back = new Snapshot(0, 0);
+  // Guarded by publishLock
+  private static Snapshot published = new Snapshot(0, 0);
+  // Read only by the main thread
+  private static Snapshot latched = new Snapshot(0, 0);
+
+  private static Thread thread = null;
+  private static volatile long lastLatchMicros = 0;
+  private static long lastLatchedSequence = 0;
+  private static long staleLoops = 0;
+
+  /**
+   * Registers signals to be acquired every loop. Must be called before {@link #start()}.
+   *
+   * @param device The device the signals belong to, used to find its bus
+   * @param signals The signals to register
+   */
+  public static void register(ParentDevice device, BaseStatusSignal... signals) {
+    if (thread != null) {
+      throw new IllegalStateException("Signals must be registered before acquisition starts");
+    }
+    signalsByBus
+        .computeIfAbsent(device.getNetwork(), (bus) -> new ArrayList<>())
+        .addAll(Arrays.asList(signals));
+
+    // Rebuild the arrays used every loop so the loop doesn't touch the map
+    busNames = signalsByBus.keySet().toArray(String[]::new);
+    busSignals =
+        signalsByBus.values().stream()
+            .map((list) -> list.toArray(BaseStatusSignal[]::new))
+            .toArray(BaseStatusSignal[][]::new);
+    busOffsets = new int[busSignals.length];
+    signalIndices.clear();
+    int index = 0;
+    for (int bus = 0; bus < busSignals.length; bus++) {
+      busOffsets[bus] = index;
+      for (BaseStatusSignal signal : busSignals[bus]) {
+        signalIndices.put(signal, index++);
+      }
+    }
+    back = new Snapshot(index, busNames.length);
+    published = new Snapshot(index, busNames.length);
+    latched = new Snapshot(index, busNames.length);
+  }
+
+  /** Starts the acquisition thread. Call once after all IOs are created, on the real robot only. */
+  public static void start() {
+    if (thread != null) {
+      return;
+    }
+    thread = new Thread(PhoenixSignalRegistry::run, "PhoenixSignalAcquisition");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Latches the latest snapshot for this loop. Call once at the start of the loop, before any IO
+   * updates its inputs.
+   */
+  public static void latch() {
+    long now = RobotController.getFPGATime();
+    lastLatchMicros = now;
+    if (thread == null) {
+      acquire();
+      publish();
+    }
+    synchronized (publishLock) {
+      latched.copyFrom(published);
+    }
+
+    if (latched.sequence == lastLatchedSequence) {
+      staleLoops++;
+    }
+    lastLatchedSequence = latched.sequence;
+    Logger.recordOutput("CAN/Snapshot Age (ms)", (now - latched.timestampMicros) / 1000.0);
+    Logger.recordOutput("CAN/Stale Snapshots", staleLoops);
+  }
+
+  /** Returns the latched value of a registered signal. */
+  public static double getValue(BaseStatusSignal signal) {
+    return latched.values[signalIndices.get(signal)];
+  }
+
+  /** Returns whether the latched values of these signals were read without errors. */
+  public static boolean isAllGood(BaseStatusSignal first, BaseStatusSignal second) {
+    return latched.good[signalIndices.get(first)] && latched.good[signalIndices.get(second)];
+  }
+
+  /** Returns the status of the latched refresh of a bus, ie "rio" or a CANivore name. */
+  public static StatusCode getBusStatus(String bus) {
+    for (int i = 0; i < busNames.length; i++) {
+      if (busNames[i].equals(bus)) {
+        return latched.busStatus[i];
+      }
+    }
+    return StatusCode.OK;
+  }
+
+  private static void run() {
+    long periodMicros = (long) (LOOP_PERIOD_SECONDS * 1e6);
+    long leadMicros = (long) (ACQUISITION_LEAD_SECONDS * 1e6);
+    long nextMicros = RobotController.getFPGATime();
+    while (!Thread.currentThread().isInterrupted()) {
+      acquire();
+      publish();
+
+      // Aim for just before the next loop start, keeping in phase with the last latch
+      long latchMicros = lastLatchMicros;
+      long now = RobotController.getFPGATime();
+      nextMicros = latchMicros > 0 ? latchMicros + periodMicros - leadMicros : nextMicros;
+      while (nextMicros <= now) {
+        nextMicros += periodMicros;
+      }
+      LockSupport.parkNanos((nextMicros - now) * 1000);
+    }
+  }
+
+  /** Refreshes every bus and copies the values into the back snapshot. */
+  private static void acquire() {
+    for (int bus = 0; bus < busSignals.length; bus++) {
+      BaseStatusSignal[] signals = busSignals[bus];
+      back.busStatus[bus] = BaseStatusSignal.refreshAll(signals);
+      int offset = busOffsets[bus];
+      for (int i = 0; i < signals.length; i++) {
+        back.values[offset + i] = signals[i].getValueAsDouble();
+        back.good[offset + i] = signals[i].getStatus().isOK();
+      }
+    }
+    back.timestampMicros = RobotController.getFPGATime();
+    back.sequence++;
+  }
+
+  /** Swaps the back snapshot with the published one. */
+  private static void publish() {
+    synchronized (publishLock) {
+      Snapshot previous = published;
+      published = back;
+      back = previous;
+    }
+    // Keep the sequence increasing across swaps
+    back.sequence = published.sequence;
+  }
+}
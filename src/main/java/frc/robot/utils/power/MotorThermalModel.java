@@ -0,0 +1,110 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.power;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+
+/**
+ * Lumped thermal model of a group of Kraken X60s, predicting how hot each will be a few seconds
+ * ahead so a mechanism can back off before the motor controller's own protection does.
+ *
+ * <p>Each motor is one thermal mass heated by its winding loss, I^2 R from the stator current, and
+ * cooled through a thermal resistance to ambient. Between measurements the estimate follows the
+ * current, and it is pulled towards the measured temperature, which comes in slowly and lags the
+ * windings. The prediction holds the current constant over the horizon, which has a closed form, so
+ * an update is a few multiplies per motor on primitive arrays.
+ */
+public class MotorThermalModel {
+  public static final double AMBIENT_TEMP_C = 25.0;
+  // Estimated for a Kraken X60 from its mass and continuous current rating
+  public static final double HEAT_CAPACITY_J_PER_C = 250.0;
+  public static final double THERMAL_RESISTANCE_C_PER_W = 0.8;
+  public static final double WINDING_RESISTANCE_OHMS = DCMotor.getKrakenX60Foc(1).rOhms;
+  // Rate the estimate is pulled towards the measured temperature, 1/s
+  public static final double CORRECTION_RATE = 0.1;
+  public static final double PREDICTION_HORIZON_SECONDS = 3.0;
+  // Derating starts at the first temperature and reaches the minimum at the second
+  public static final double DERATE_START_TEMP_C = 70.0;
+  public static final double DERATE_LIMIT_TEMP_C = 90.0;
+  public static final double MIN_DERATE = 0.2;
+  private static final double LOOP_PERIOD_SECONDS = 0.02;
+  private static final double HORIZON_DECAY =
+      Math.exp(-PREDICTION_HORIZON_SECONDS / (THERMAL_RESISTANCE_C_PER_W * HEAT_CAPACITY_J_PER_C));
+
+  private final double[] temperaturesC;
+  private final double[] predictedTemperaturesC;
+  private final boolean[] measured;
+
+  /**
+   * Creates a new MotorThermalModel.
+   *
+   * @param motorCount The number of motors to model
+   */
+  public MotorThermalModel(int motorCount) {
+    temperaturesC = new double[motorCount];
+    predictedTemperaturesC = new double[motorCount];
+    measured = new boolean[motorCount];
+    for (int i = 0; i < motorCount; i++) {
+      temperaturesC[i] = AMBIENT_TEMP_C;
+      predictedTemperaturesC[i] = AMBIENT_TEMP_C;
+    }
+  }
+
+  /**
+   * Advances one motor by a loop. Call once per loop for each motor.
+   *
+   * @param motor The index of the motor
+   * @param statorCurrentAmps The motor's stator current
+   * @param measuredTempC The temperature the controller reports, or 0 if it doesn't have one
+   */
+  public void update(int motor, double statorCurrentAmps, double measuredTempC) {
+    double heatWatts = statorCurrentAmps * statorCurrentAmps * WINDING_RESISTANCE_OHMS;
+    double temperature = temperaturesC[motor];
+    if (measuredTempC > 0.0 && !measured[motor]) {
+      // Start from the first reading instead of ambient
+      measured[motor] = true;
+      temperature = measuredTempC;
+    }
+    temperature +=
+        LOOP_PERIOD_SECONDS
+            * (heatWatts - (temperature - AMBIENT_TEMP_C) / THERMAL_RESISTANCE_C_PER_W)
+            / HEAT_CAPACITY_J_PER_C;
+    if (measuredTempC > 0.0) {
+      temperature += LOOP_PERIOD_SECONDS * CORRECTION_RATE * (measuredTempC - temperature);
+    }
+    temperaturesC[motor] = temperature;
+
+    // Exponential approach to the steady state for this current
+    double steadyTemperature = AMBIENT_TEMP_C + heatWatts * THERMAL_RESISTANCE_C_PER_W;
+    predictedTemperaturesC[motor] =
+        steadyTemperature + (temperature - steadyTemperature) * HORIZON_DECAY;
+  }
+
+  /**
+   * Returns the fraction of its current or speed the group should run at, from the hottest
+   * predicted motor.
+   */
+  public double getDerate() {
+    double hottest = Double.NEGATIVE_INFINITY;
+    for (double temperature : predictedTemperaturesC) {
+      hottest = Math.max(hottest, temperature);
+    }
+    return MathUtil.clamp(
+        (DERATE_LIMIT_TEMP_C - hottest) / (DERATE_LIMIT_TEMP_C - DERATE_START_TEMP_C),
+        MIN_DERATE,
+        1.0);
+  }
+
+  /** Returns the estimated temperature of each motor, reused between calls. */
+  public double[] getTemperaturesC() {
+    return temperaturesC;
+  }
+
+  /** Returns the predicted temperature of each motor at the horizon, reused between calls. */
+  public double[] getPredictedTemperaturesC() {
+    return predictedTemperaturesC;
+  }
+}
@@ -0,0 +1,213 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.power;
+
+import edu.wpi.first.wpilibj.PowerDistribution;
+import edu.wpi.first.wpilibj.RobotController;
+import java.util.ArrayList;
+import java.util.List;
+import org.littletonrobotics.junction.AutoLog;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Shares a battery current budget between the mechanisms by priority, so they can't brown out the
+ * robot together.
+ *
+ * <p>The battery is modeled as an open circuit voltage behind a resistance. The budget is the
+ * current that would pull it down to {@link #TARGET_VOLTAGE}: the measured current plus the
+ * headroom between the measured voltage and the target over the resistance. That doesn't depend on
+ * the load, so limiting the motors doesn't feed back into it. Drops apply immediately and rises are
+ * filtered over a couple of loops.
+ *
+ * <p>Consumers register in priority order, highest first. Every loop each consumer gets its
+ * minimum, then in priority order each gets what it is drawing plus some headroom, and what is left
+ * goes to consumers in priority order up to their maximum. An idle mechanism doesn't hold current a
+ * lower priority one needs, and one that starts drawing gets its share back within a few loops.
+ * Limits are on supply current. Each is a config apply over CAN, so a lower limit is sent
+ * immediately but a higher one only once it has risen by {@link #RAISE_STEP_AMPS} or stayed higher
+ * for {@link #RAISE_HOLD_LOOPS}. A consumer whose motors are predicted to overheat has its minimum
+ * and maximum derated.
+ */
+public class PowerManager {
+  // Battery, main breaker and wiring
+  public static final double BATTERY_RESISTANCE_OHMS = 0.02;
+  // Well above the roboRIO brownout at 6.75 volts
+  public static final double TARGET_VOLTAGE = 8.0;
+  // roboRIO, radio, steering, pivot and other loads without a budget
+  public static final double RESERVED_AMPS = 20.0;
+  public static final double MAX_BUDGET_AMPS = 400.0;
+  // Room for a consumer's draw to grow before the next loop
+  public static final double DEMAND_HEADROOM_FRACTION = 0.25;
+  public static final double DEMAND_HEADROOM_AMPS = 10.0;
+  public static final double LIMIT_RESOLUTION_AMPS = 1.0;
+  // A higher limit is sent once it is this far above the sent one, or has been above it this long
+  public static final double RAISE_STEP_AMPS = 5.0;
+  public static final int RAISE_HOLD_LOOPS = 25;
+  // Fraction of a rise in the budget taken each loop
+  private static final double RISE_GAIN = 0.4;
+
+  @AutoLog
+  public static class PowerInputs {
+    public double batteryVoltage = 12.0;
+    public double totalCurrentAmps = 0.0;
+  }
+
+  /** A mechanism with a share of the budget. */
+  public interface Consumer {
+    /** Returns the current the mechanism draws from the battery. */
+    public double getSupplyCurrentAmps();
+
+    /** Limits the total current the mechanism draws from the battery. */
+    public void setSupplyCurrentLimit(double amps);
+
+    /** Returns the fraction of its share the mechanism should take while its motors are hot. */
+    public default double getThermalDerate() {
+      return 1.0;
+    }
+  }
+
+  private static class Registration {
+    private final String allocationKey;
+    private final double minAmps;
+    private final double maxAmps;
+    private final Consumer consumer;
+    private double allocatedAmps;
+    private double derate = 1.0;
+    private double sentAmps = Double.NaN;
+    private int loopsAboveSent = 0;
+
+    private Registration(String name, double minAmps, double maxAmps, Consumer consumer) {
+      this.allocationKey = "Power/Allocations/" + name;
+      this.minAmps = minAmps;
+      this.maxAmps = maxAmps;
+      this.consumer = consumer;
+    }
+  }
+
+  private static final List<Registration> registrations = new ArrayList<>();
+  private static final PowerInputsAutoLogged inputs = new PowerInputsAutoLogged();
+  private static PowerDistribution powerDistribution = null;
+  private static double budgetAmps = Double.NaN;
+
+  /** Sets the power distribution to read the battery from, or null to estimate it. */
+  public static void setPowerDistribution(PowerDistribution newPowerDistribution) {
+    powerDistribution = newPowerDistribution;
+  }
+
+  /**
+   * Gives a mechanism a share of the budget. Register in priority order, highest first.
+   *
+   * @param name The name to log the allocation under
+   * @param minAmps The supply current the mechanism always gets
+   * @param maxAmps The most supply current the mechanism can use
+   * @param consumer The mechanism
+   */
+  public static void register(String name, double minAmps, double maxAmps, Consumer consumer) {
+    registrations.add(new Registration(name, minAmps, maxAmps, consumer));
+  }
+
+  /** Reads the battery, shares out the budget and sends changed limits. Call once per loop. */
+  public static void periodic() {
+    if (powerDistribution != null) {
+      inputs.batteryVoltage = powerDistribution.getVoltage();
+      inputs.totalCurrentAmps = powerDistribution.getTotalCurrent();
+    } else {
+      // Without a power distribution, add up the draw the consumers report
+      inputs.batteryVoltage = RobotController.getBatteryVoltage();
+      inputs.totalCurrentAmps = RESERVED_AMPS;
+      for (Registration registration : registrations) {
+        inputs.totalCurrentAmps += registration.consumer.getSupplyCurrentAmps();
+      }
+    }
+    Logger.processInputs("Power", inputs);
+
+    double rawBudget =
+        inputs.totalCurrentAmps
+            + (inputs.batteryVoltage - TARGET_VOLTAGE) / BATTERY_RESISTANCE_OHMS;
+    rawBudget = Math.min(Math.max(rawBudget, 0.0), MAX_BUDGET_AMPS);
+    if (Double.isNaN(budgetAmps) || rawBudget < budgetAmps) {
+      budgetAmps = rawBudget;
+    } else {
+      budgetAmps += RISE_GAIN * (rawBudget - budgetAmps);
+    }
+
+    // Minimums first, then demand, then whatever is left, each in priority order. Hot mechanisms
+    // have their minimum and maximum scaled down.
+    double remaining = budgetAmps - RESERVED_AMPS;
+    for (Registration registration : registrations) {
+      registration.derate = registration.consumer.getThermalDerate();
+      registration.allocatedAmps = registration.minAmps * registration.derate;
+      remaining -= registration.allocatedAmps;
+    }
+    for (Registration registration : registrations) {
+      double demand =
+          registration.consumer.getSupplyCurrentAmps() * (1.0 + DEMAND_HEADROOM_FRACTION)
+              + DEMAND_HEADROOM_AMPS;
+      double grant =
+          Math.max(
+              Math.min(
+                  Math.min(demand, registration.maxAmps * registration.derate)
+                      - registration.allocatedAmps,
+                  remaining),
+              0.0);
+      registration.allocatedAmps += grant;
+      remaining -= grant;
+    }
+    for (Registration registration : registrations) {
+      double grant =
+          Math.max(
+              Math.min(
+                  registration.maxAmps * registration.derate - registration.allocatedAmps,
+                  remaining),
+              0.0);
+      registration.allocatedAmps += grant;
+      remaining -= grant;
+    }
+
+    for (Registration registration : registrations) {
+      double limit =
+          Math.floor(registration.allocatedAmps / LIMIT_RESOLUTION_AMPS) * LIMIT_RESOLUTION_AMPS;
+      // Lower limits go out now, higher ones wait so small rises don't resend every loop
+      boolean send;
+      if (Double.isNaN(registration.sentAmps) || limit < registration.sentAmps) {
+        send = true;
+      } else if (limit > registration.sentAmps) {
+        registration.loopsAboveSent++;
+        send =
+            limit >= registration.sentAmps + RAISE_STEP_AMPS
+                || registration.loopsAboveSent >= RAISE_HOLD_LOOPS;
+      } else {
+        send = false;
+      }
+      if (send) {
+        registration.sentAmps = limit;
+        registration.consumer.setSupplyCurrentLimit(limit);
+      }
+      if (limit <= registration.sentAmps) {
+        registration.loopsAboveSent = 0;
+      }
+      Logger.recordOutput(registration.allocationKey, registration.sentAmps);
+    }
+    Logger.recordOutput("Power/Budget", budgetAmps);
+  }
+
+  /** Returns the battery voltage read this loop. */
+  public static double getBatteryVoltage() {
+    return inputs.batteryVoltage;
+  }
+
+  /** Returns the total current drawn from the battery this loop. */
+  public static double getTotalCurrentAmps() {
+    return inputs.totalCurrentAmps;
+  }
+
+  /**
+   * Estimates the supply current of a motor controller from its output, which draws applied volts
+   * times stator current from the battery.
+   */
+  public static double estimateSupplyCurrent(double appliedVolts, double statorCurrentAmps) {
+    return Math.abs(appliedVolts * statorCurrentAmps) / Math.max(inputs.batteryVoltage, 1.0);
+  }
+}
@@ -0,0 +1,66 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.power;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Keeps open loop voltage requests honest as the battery sags.
+ *
+ * <p>TalonFX VoltageOut is already compensated, the controller scales its duty cycle by the supply
+ * voltage it measures so a request gives the same volts at any battery voltage, and the motor sims
+ * do the same against the simulated battery. What changes over a match is how much the battery can
+ * give. A request above that saturates and the mechanism runs slower than it did at the start of
+ * the match, with nothing in the log to say so. Each open loop output passes its requests through
+ * its own instance's {@link #limit(double)}, which caps them at what the battery can give and
+ * records the fraction of the request that was applied.
+ */
+public class VoltageCompensation {
+  // Motor controllers can't put out the whole supply voltage
+  public static final double OUTPUT_DROP_VOLTS = 0.25;
+
+  private static final List<VoltageCompensation> instances = new ArrayList<>();
+  private static int saturatedRequests = 0;
+
+  private final String factorKey;
+  private double appliedFactor = 1.0;
+
+  /**
+   * Creates a new VoltageCompensation for one output.
+   *
+   * @param name The name to log the applied factor under
+   */
+  public VoltageCompensation(String name) {
+    factorKey = "Power/Voltage Compensation/" + name;
+    instances.add(this);
+  }
+
+  /** Returns the volts the controller will actually apply for a request. */
+  public double limit(double volts) {
+    double available = Math.max(PowerManager.getBatteryVoltage() - OUTPUT_DROP_VOLTS, 0.0);
+    if (Math.abs(volts) > available) {
+      saturatedRequests++;
+      appliedFactor = available / Math.abs(volts);
+      return Math.copySign(available, volts);
+    }
+    appliedFactor = 1.0;
+    return volts;
+  }
+
+  /**
+   * Logs the fraction of its last request each output applied, and the requests capped since the
+   * last call. Call once per loop.
+   */
+  public static void periodic() {
+    for (int i = 0; i < instances.size(); i++) {
+      VoltageCompensation instance = instances.get(i);
+      Logger.recordOutput(instance.factorKey, instance.appliedFactor);
+    }
+    Logger.recordOutput("Power/Saturated Voltage Requests", saturatedRequests);
+    saturatedRequests = 0;
+  }
+}
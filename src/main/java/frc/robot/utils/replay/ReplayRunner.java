@@ -0,0 +1,177 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.replay;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replays every WPILOG in a directory and reports how fast each one ran.
+ *
+ * <p>AdvantageKit's Logger is static and exits the JVM at the end of a replay, so each log runs in
+ * its own robot JVM with AKIT_LOG_PATH pointing at it. With one job the logs run one after another,
+ * with more they run in parallel. Each replay writes its outputs next to the log with a _sim
+ * suffix.
+ *
+ * <p>Usage: ReplayRunner &lt;log directory&gt; [jobs]
+ */
+public class ReplayRunner {
+  /** Environment variable read by LogFileUtil.findReplayLog to pick the replay log. */
+  public static final String LOG_PATH_ENVIRONMENT_VARIABLE = "AKIT_LOG_PATH";
+
+  private static final String RESULT_PREFIX = "REPLAY_RESULT";
+  // Lines of child output kept to explain a failed replay
+  private static final int FAILURE_OUTPUT_LINES = 20;
+
+  private static volatile long replayLoops = 0;
+  private static volatile long replayStartNanos = 0;
+
+  /** Result of replaying a single log. */
+  public static record Result(
+      String name, boolean succeeded, long loops, double replaySeconds, double wallSeconds) {
+    public double loopsPerSecond() {
+      return replaySeconds > 0.0 ? loops / replaySeconds : 0.0;
+    }
+  }
+
+  /**
+   * Starts counting replayed loops and prints them when the JVM exits, for the runner to read.
+   * Called by the robot in replay mode.
+   */
+  public static void startReporting() {
+    replayStartNanos = System.nanoTime();
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () ->
+                    System.out.println(
+                        RESULT_PREFIX
+                            + " "
+                            + replayLoops
+                            + " "
+                            + (System.nanoTime() - replayStartNanos) / 1e9)));
+  }
+
+  /** Counts a replayed loop. Called by the robot every loop in replay mode. */
+  public static void loopCompleted() {
+    replayLoops++;
+  }
+
+  public static void main(String... args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Usage: ReplayRunner <log directory> [jobs]");
+      System.exit(1);
+    }
+    File directory = new File(args[0]);
+    int jobs = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+    File[] logs =
+        directory.listFiles(
+            (dir, name) -> name.endsWith(".wpilog") && !name.endsWith("_sim.wpilog"));
+    if (logs == null || logs.length == 0) {
+      System.err.println("No logs found in " + directory.getAbsolutePath());
+      System.exit(1);
+    }
+    Arrays.sort(logs);
+    System.out.printf("Replaying %d logs with %d jobs%n", logs.length, jobs);
+
+    long start = System.nanoTime();
+    ExecutorService pool = Executors.newFixedThreadPool(jobs);
+    List<Future<Result>> futures = new ArrayList<>();
+    for (File log : logs) {
+      futures.add(pool.submit(() -> replay(log)));
+    }
+    List<Result> results = new ArrayList<>();
+    for (Future<Result> future : futures) {
+      results.add(future.get());
+    }
+    pool.shutdown();
+    double totalSeconds = (System.nanoTime() - start) / 1e9;
+
+    System.out.println();
+    System.out.printf(
+        "%-40s %8s %10s %12s %10s%n", "Log", "Status", "Loops", "Loops/s", "Wall (s)");
+    long failures = 0;
+    for (Result result : results) {
+      System.out.printf(
+          "%-40s %8s %10d %12.1f %10.2f%n",
+          result.name(),
+          result.succeeded() ? "OK" : "FAILED",
+          result.loops(),
+          result.loopsPerSecond(),
+          result.wallSeconds());
+      if (!result.succeeded()) {
+        failures++;
+      }
+    }
+    System.out.printf("Total wall time: %.2f s%n", totalSeconds);
+    System.exit(failures == 0 ? 0 : 1);
+  }
+
+  /** Replays a log in a new robot JVM using the same java, classpath and native libraries. */
+  private static Result replay(File log) throws IOException, InterruptedException {
+    String java =
+        ProcessHandle.current()
+            .info()
+            .command()
+            .orElse(System.getProperty("java.home") + "/bin/java");
+    ProcessBuilder builder =
+        new ProcessBuilder(
+            java,
+            "-Djava.library.path=" + System.getProperty("java.library.path"),
+            "-cp",
+            System.getProperty("java.class.path"),
+            "frc.robot.Main");
+    builder.environment().put(LOG_PATH_ENVIRONMENT_VARIABLE, log.getAbsolutePath());
+    builder.redirectErrorStream(true);
+
+    long start = System.nanoTime();
+    Process process = builder.start();
+    long loops = 0;
+    double replaySeconds = 0.0;
+    boolean reported = false;
+    Deque<String> lastLines = new ArrayDeque<>();
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(RESULT_PREFIX)) {
+          String[] parts = line.split(" ");
+          loops = Long.parseLong(parts[1]);
+          replaySeconds = Double.parseDouble(parts[2]);
+          reported = true;
+        } else {
+          lastLines.addLast(line);
+          if (lastLines.size() > FAILURE_OUTPUT_LINES) {
+            lastLines.removeFirst();
+          }
+        }
+      }
+    }
+    int exitCode = process.waitFor();
+    double wallSeconds = (System.nanoTime() - start) / 1e9;
+
+    boolean succeeded = exitCode == 0 && reported;
+    if (!succeeded) {
+      System.err.printf("Replay of %s failed with exit code %d:%n", log.getName(), exitCode);
+      lastLines.forEach(System.err::println);
+    } else {
+      System.out.printf(
+          "Replayed %s: %d loops in %.2f s (%.1f loops/s)%n",
+          log.getName(), loops, wallSeconds, replaySeconds > 0.0 ? loops / replaySeconds : 0.0);
+    }
+    return new Result(log.getName(), succeeded, loops, replaySeconds, wallSeconds);
+  }
+}
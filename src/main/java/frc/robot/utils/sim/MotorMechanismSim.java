@@ -0,0 +1,183 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.sim;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A geared DC motor driving an inertia, with an optional position dependent load and hard stops.
+ *
+ * <p>Same model as WPILib's DCMotorSim, but the velocity dynamics are first order so they are
+ * discretized exactly with a scalar exponential instead of a matrix exponential every update. That
+ * keeps kilohertz substeps cheap and stable even for mechanisms with sub-millisecond time
+ * constants, like the swerve steering. The load is held constant over each substep.
+ */
+public class MotorMechanismSim {
+  private final DCMotor motor;
+  private final double gearing;
+  private final double moiKgMetersSquared;
+  private final double minPositionRad;
+  private final double maxPositionRad;
+  private final DoubleUnaryOperator loadAcceleration;
+  // Continuous time velocity dynamics, dw/dt = a * w + b * volts + load
+  private final double a;
+  private final double b;
+
+  private double positionRad = 0.0;
+  private double velocityRadPerSec = 0.0;
+  private double inputVolts = 0.0;
+  private double appliedVolts = 0.0;
+  private double currentLimitAmps = Double.POSITIVE_INFINITY;
+  private double supplyCurrentLimitAmps = Double.POSITIVE_INFINITY;
+
+  private double lastDtSeconds = Double.NaN;
+  private double expADt = 0.0;
+
+  /**
+   * Creates a new MotorMechanismSim without a load or hard stops.
+   *
+   * @param motor The motors driving the mechanism
+   * @param gearing Reduction from motor to mechanism, greater than 1 is a reduction
+   * @param moiKgMetersSquared Moment of inertia of the mechanism
+   */
+  public MotorMechanismSim(DCMotor motor, double gearing, double moiKgMetersSquared) {
+    this(
+        motor,
+        gearing,
+        moiKgMetersSquared,
+        Double.NEGATIVE_INFINITY,
+        Double.POSITIVE_INFINITY,
+        (position) -> 0.0);
+  }
+
+  /**
+   * Creates a new MotorMechanismSim.
+   *
+   * @param motor The motors driving the mechanism
+   * @param gearing Reduction from motor to mechanism, greater than 1 is a reduction
+   * @param moiKgMetersSquared Moment of inertia of the mechanism
+   * @param minPositionRad Lower hard stop
+   * @param maxPositionRad Upper hard stop
+   * @param loadAcceleration Acceleration from external loads like gravity, in rad/s^2, from the
+   *     mechanism position
+   */
+  public MotorMechanismSim(
+      DCMotor motor,
+      double gearing,
+      double moiKgMetersSquared,
+      double minPositionRad,
+      double maxPositionRad,
+      DoubleUnaryOperator loadAcceleration) {
+    this.motor = motor;
+    this.gearing = gearing;
+    this.moiKgMetersSquared = moiKgMetersSquared;
+    this.minPositionRad = minPositionRad;
+    this.maxPositionRad = maxPositionRad;
+    this.loadAcceleration = loadAcceleration;
+    a =
+        -gearing
+            * gearing
+            * motor.KtNMPerAmp
+            / (motor.KvRadPerSecPerVolt * motor.rOhms * moiKgMetersSquared);
+    b = gearing * motor.KtNMPerAmp / (motor.rOhms * moiKgMetersSquared);
+  }
+
+  /** Sets the motor voltage, clamped to the battery voltage. */
+  public void setInputVoltage(double volts) {
+    double batteryVoltage = PhysicsSim.getBatteryVoltage();
+    inputVolts = MathUtil.clamp(volts, -batteryVoltage, batteryVoltage);
+  }
+
+  /** Limits the motor current, like a stator current limit, by lowering the applied voltage. */
+  public void setCurrentLimit(double amps) {
+    currentLimitAmps = amps;
+  }
+
+  /**
+   * Limits the current drawn from the battery, like a supply current limit, by lowering the applied
+   * voltage. The controller draws applied volts times stator current from the battery.
+   */
+  public void setSupplyCurrentLimit(double amps) {
+    supplyCurrentLimitAmps = amps;
+  }
+
+  /** Applies an external angular impulse to the mechanism, ie from a wheel touching the ground. */
+  public void applyAngularImpulse(double newtonMeterSeconds) {
+    velocityRadPerSec += newtonMeterSeconds / moiKgMetersSquared;
+  }
+
+  /** Sets the position and velocity of the mechanism. */
+  public void setState(double positionRad, double velocityRadPerSec) {
+    this.positionRad = positionRad;
+    this.velocityRadPerSec = velocityRadPerSec;
+  }
+
+  /**
+   * Advances the mechanism.
+   *
+   * @param dtSeconds The length of the step
+   * @param enabled Whether the motor is enabled, disabled motors are driven at 0 volts
+   */
+  public void update(double dtSeconds, boolean enabled) {
+    if (dtSeconds != lastDtSeconds) {
+      lastDtSeconds = dtSeconds;
+      expADt = Math.exp(a * dtSeconds);
+    }
+    appliedVolts = enabled ? inputVolts : 0.0;
+    if (currentLimitAmps != Double.POSITIVE_INFINITY) {
+      double backEmfVolts = velocityRadPerSec * gearing / motor.KvRadPerSecPerVolt;
+      double limitVolts = currentLimitAmps * motor.rOhms;
+      appliedVolts =
+          MathUtil.clamp(appliedVolts, backEmfVolts - limitVolts, backEmfVolts + limitVolts);
+    }
+    if (supplyCurrentLimitAmps != Double.POSITIVE_INFINITY) {
+      // Solve V * (V - backEmf) / R <= battery * limit for the applied voltage V
+      double backEmfVolts = velocityRadPerSec * gearing / motor.KvRadPerSecPerVolt;
+      double root =
+          Math.sqrt(
+              backEmfVolts * backEmfVolts
+                  + 4.0 * motor.rOhms * PhysicsSim.getBatteryVoltage() * supplyCurrentLimitAmps);
+      appliedVolts =
+          MathUtil.clamp(appliedVolts, 0.5 * (backEmfVolts - root), 0.5 * (backEmfVolts + root));
+    }
+    double u = b * appliedVolts + loadAcceleration.applyAsDouble(positionRad);
+    // Velocity decays exponentially towards the steady state for this input
+    double steadyVelocity = -u / a;
+    double velocityError = velocityRadPerSec - steadyVelocity;
+    positionRad += steadyVelocity * dtSeconds + velocityError * (expADt - 1.0) / a;
+    velocityRadPerSec = steadyVelocity + velocityError * expADt;
+
+    if (positionRad <= minPositionRad) {
+      positionRad = minPositionRad;
+      velocityRadPerSec = Math.max(velocityRadPerSec, 0.0);
+    } else if (positionRad >= maxPositionRad) {
+      positionRad = maxPositionRad;
+      velocityRadPerSec = Math.min(velocityRadPerSec, 0.0);
+    }
+  }
+
+  public double getPositionRad() {
+    return positionRad;
+  }
+
+  public double getVelocityRadPerSec() {
+    return velocityRadPerSec;
+  }
+
+  public double getMoiKgMetersSquared() {
+    return moiKgMetersSquared;
+  }
+
+  /** Returns the voltage applied in the last update, after the current limit. */
+  public double getAppliedVolts() {
+    return appliedVolts;
+  }
+
+  public double getCurrentDrawAmps() {
+    return motor.getCurrent(velocityRadPerSec * gearing, appliedVolts);
+  }
+}
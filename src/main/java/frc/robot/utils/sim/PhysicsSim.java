@@ -0,0 +1,101 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.sim;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.utils.logging.LoopProfiler;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Steps every simulated mechanism at a fixed physics rate, several times per robot loop.
+ *
+ * <p>Sim IOs register their mechanisms once, and the robot calls {@link #step(double)} once per
+ * loop from simulationPeriodic. Each loop is split into substeps at the physics rate, 1 kHz by
+ * default and up to 5 kHz, set with the physicsRateHz system property. Mechanisms run their closed
+ * loop control every {@link #CONTROL_PERIOD_SECONDS}, the rate of the motor controllers they stand
+ * in for, and only while the robot is enabled, like the real controllers.
+ */
+public class PhysicsSim {
+  public static final double MIN_RATE_HZ = 1000.0;
+  public static final double MAX_RATE_HZ = 5000.0;
+  // TalonFX closed loops run at 1 kHz
+  public static final double CONTROL_PERIOD_SECONDS = 0.001;
+
+  /** A simulated mechanism with its own plant and controller. */
+  public interface Mechanism {
+    /** Runs closed loop control. Called every control period while enabled. */
+    public default void updateControl() {}
+
+    /**
+     * Advances the plant.
+     *
+     * @param dtSeconds The length of the substep
+     * @param enabled Whether the robot is enabled, outputs should be neutral when it isn't
+     */
+    public void step(double dtSeconds, boolean enabled);
+  }
+
+  private static final List<Mechanism> mechanisms = new ArrayList<>();
+  private static final LoopProfiler.Section profile = LoopProfiler.section("Sim/Physics");
+  private static double rateHz =
+      MathUtil.clamp(
+          Double.parseDouble(System.getProperty("physicsRateHz", "1000")),
+          MIN_RATE_HZ,
+          MAX_RATE_HZ);
+  private static double timeSinceControlSeconds = 0.0;
+  // Read once per loop, the motors can't put out more than this
+  private static double batteryVoltage = 12.0;
+
+  /** Adds a mechanism to be stepped every loop. */
+  public static void register(Mechanism mechanism) {
+    mechanisms.add(mechanism);
+  }
+
+  /** Sets the physics rate, clamped to 1 to 5 kHz. */
+  public static void setRateHz(double newRateHz) {
+    rateHz = MathUtil.clamp(newRateHz, MIN_RATE_HZ, MAX_RATE_HZ);
+  }
+
+  public static double getRateHz() {
+    return rateHz;
+  }
+
+  /** Returns the simulated battery voltage at the start of the current loop. */
+  public static double getBatteryVoltage() {
+    return batteryVoltage;
+  }
+
+  /**
+   * Advances every mechanism by one robot loop.
+   *
+   * @param periodSeconds The length of the robot loop
+   */
+  public static void step(double periodSeconds) {
+    profile.start();
+    boolean enabled = DriverStation.isEnabled();
+    batteryVoltage = RobotController.getBatteryVoltage();
+    int substeps = Math.max(1, (int) Math.round(periodSeconds * rateHz));
+    double dt = periodSeconds / substeps;
+    for (int i = 0; i < substeps; i++) {
+      timeSinceControlSeconds += dt;
+      // Small tolerance so 1 kHz physics runs control on every substep
+      if (timeSinceControlSeconds >= CONTROL_PERIOD_SECONDS - 1e-9) {
+        timeSinceControlSeconds -= CONTROL_PERIOD_SECONDS;
+        if (enabled) {
+          for (int j = 0; j < mechanisms.size(); j++) {
+            mechanisms.get(j).updateControl();
+          }
+        }
+      }
+      for (int j = 0; j < mechanisms.size(); j++) {
+        mechanisms.get(j).step(dt, enabled);
+      }
+    }
+    profile.stop();
+  }
+}
@@ -0,0 +1,225 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.sim;
+
+import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.wpilibj.simulation.DIOSim;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import frc.robot.Robot;
+import frc.robot.subsystems.carriage.CarriageIOReal;
+import frc.robot.subsystems.feeder.FeederIOReal;
+import java.util.Arrays;
+
+/**
+ * Runs the robot in simulation without a driver station or GUI, stepping the sim clock one loop at
+ * a time as fast as the CPU allows.
+ *
+ * <p>The robot runs on its own thread while this thread owns the clock. SimHooks.stepTiming only
+ * returns once the robot loop is waiting on its notifier again, so every step is exactly one loop
+ * and runs are deterministic. A scripted auto and teleop sequence is fed through DriverStationSim
+ * and the controller sims, and the harness exits non-zero if any check fails.
+ *
+ * <p>Notes are modeled through the beambreaks. The harness trips the feeder beambreak when a note
+ * reaches the feeder, and clears it once the robot has been feeding a shot long enough for the note
+ * to leave. Feeding is read from the robot rather than the Phoenix sim, which runs on wall clock
+ * time and would make runs nondeterministic.
+ */
+public class SimHarness {
+  public static final double LOOP_PERIOD_SECONDS = 0.02;
+  public static final double AUTO_SECONDS = 15.0;
+  // Fail if the p99 loop time on the host is longer than this
+  public static final double MAX_LOOP_MILLIS = 20.0;
+  // Time from the intake running to the note reaching the feeder
+  public static final double INTAKE_SECONDS = 0.3;
+  // Time the feeder has to run for the note to leave the robot
+  public static final double NOTE_EXIT_SECONDS = 0.1;
+  // Fail if a note takes longer than this from the intake running to leaving the shooter
+  public static final double MAX_CYCLE_SECONDS = 1.5;
+
+  private final Robot robot;
+  private final XboxControllerSim controller = new XboxControllerSim(0);
+  private final XboxControllerSim operator = new XboxControllerSim(1);
+  private final DIOSim feederFirstBeambreak = new DIOSim(FeederIOReal.FIRST_BEAMBREAK_CHANNEL);
+  private final DIOSim feederLastBeambreak = new DIOSim(FeederIOReal.LAST_BEAMBREAK_CHANNEL);
+  private final DIOSim carriageBeambreak = new DIOSim(CarriageIOReal.BEAMBREAK_CHANNEL);
+  private boolean notePresent = false;
+  private double feedingSeconds = 0.0;
+
+  private final double[] loopMillis = new double[1 << 16];
+  private int loopCount = 0;
+  private int failures = 0;
+
+  private SimHarness(Robot robot) {
+    this.robot = robot;
+  }
+
+  public static void main(String... args) throws InterruptedException {
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Failed to initialize the HAL");
+    }
+    SimHooks.pauseTiming();
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setAllianceStationId(AllianceStationID.Blue1);
+    DriverStationSim.setEnabled(false);
+    DriverStationSim.notifyNewData();
+
+    Robot robot = new Robot();
+    Thread robotThread = new Thread(robot::startCompetition, "Robot");
+    robotThread.setDaemon(true);
+    robotThread.start();
+    SimHooks.waitForProgramStart();
+
+    SimHarness harness = new SimHarness(robot);
+    long start = System.nanoTime();
+    harness.run();
+    double wallSeconds = (System.nanoTime() - start) / 1e9;
+
+    robot.endCompetition();
+    harness.report(wallSeconds);
+    System.exit(harness.failures == 0 ? 0 : 1);
+  }
+
+  /** Runs the scripted match. */
+  private void run() {
+    // Let robotInit settle while disabled
+    step(1.0);
+
+    Pose2d autoStart = robot.getPose();
+    DriverStationSim.setAutonomous(true);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+    step(AUTO_SECONDS);
+    Pose2d autoEnd = robot.getPose();
+    check(
+        "auto moves the robot",
+        autoEnd.getTranslation().getDistance(autoStart.getTranslation()) > 0.5);
+
+    DriverStationSim.setAutonomous(false);
+    DriverStationSim.notifyNewData();
+    step(0.5);
+
+    // Drive forward at full stick
+    Pose2d driveStart = robot.getPose();
+    controller.setLeftY(-1.0);
+    controller.notifyNewData();
+    step(2.0);
+    controller.setLeftY(0.0);
+    controller.notifyNewData();
+    step(1.0);
+    check(
+        "teleop drives forward",
+        robot.getPose().getTranslation().getDistance(driveStart.getTranslation()) > 1.0);
+
+    // Make sure we are targeting the speaker with an empty robot
+    setNotePresent(false);
+    operator.setLeftTriggerAxis(1.0);
+    operator.notifyNewData();
+    step(0.1);
+    operator.setLeftTriggerAxis(0.0);
+    operator.notifyNewData();
+    step(0.5);
+
+    // Intake a note, then shoot it as soon as it reaches the feeder
+    int shotsBefore = robot.getShotsFired();
+    controller.setLeftTriggerAxis(1.0);
+    controller.notifyNewData();
+    int cycleLoops = step(INTAKE_SECONDS);
+    setNotePresent(true);
+    controller.setLeftTriggerAxis(0.0);
+    controller.setRightTriggerAxis(1.0);
+    controller.notifyNewData();
+    int maxLoops = (int) Math.round(3.0 / LOOP_PERIOD_SECONDS);
+    for (int i = 0; i < maxLoops && robot.getShotsFired() == shotsBefore; i++) {
+      cycleLoops += step(LOOP_PERIOD_SECONDS);
+    }
+    controller.setRightTriggerAxis(0.0);
+    controller.notifyNewData();
+    step(1.0);
+    check("teleop shot fires", robot.getShotsFired() == shotsBefore + 1);
+    double cycleSeconds = cycleLoops * LOOP_PERIOD_SECONDS;
+    System.out.printf("Intake to shot cycle: %.2f s%n", cycleSeconds);
+    check(
+        "intake to shot cycle under " + MAX_CYCLE_SECONDS + " s",
+        robot.getShotsFired() > shotsBefore && cycleSeconds <= MAX_CYCLE_SECONDS);
+
+    DriverStationSim.setEnabled(false);
+    DriverStationSim.notifyNewData();
+    step(1.0);
+  }
+
+  /** Steps the sim clock one loop at a time, timing each loop. Returns the number of loops. */
+  private int step(double seconds) {
+    int loops = (int) Math.round(seconds / LOOP_PERIOD_SECONDS);
+    for (int i = 0; i < loops; i++) {
+      long start = System.nanoTime();
+      SimHooks.stepTiming(LOOP_PERIOD_SECONDS);
+      if (loopCount < loopMillis.length) {
+        loopMillis[loopCount++] = (System.nanoTime() - start) / 1e6;
+      }
+      updateNote();
+    }
+    return loops;
+  }
+
+  /** Lets the note leave the robot once the robot has been feeding a shot long enough. */
+  private void updateNote() {
+    if (!notePresent) {
+      return;
+    }
+    if (robot.isFeedingShot()) {
+      feedingSeconds += LOOP_PERIOD_SECONDS;
+    } else {
+      feedingSeconds = 0.0;
+    }
+    if (feedingSeconds >= NOTE_EXIT_SECONDS) {
+      setNotePresent(false);
+    }
+  }
+
+  /** Trips or clears the beambreaks. A note is held at the feeder's first beambreak. */
+  private void setNotePresent(boolean present) {
+    notePresent = present;
+    feedingSeconds = 0.0;
+    feederFirstBeambreak.setValue(present);
+    feederLastBeambreak.setValue(false);
+    carriageBeambreak.setValue(false);
+  }
+
+  private void check(String name, boolean passed) {
+    System.out.printf("[%s] %s%n", passed ? "PASS" : "FAIL", name);
+    if (!passed) {
+      failures++;
+    }
+  }
+
+  private void report(double wallSeconds) {
+    double[] sorted = Arrays.copyOf(loopMillis, loopCount);
+    Arrays.sort(sorted);
+    double max = sorted.length > 0 ? sorted[sorted.length - 1] : 0.0;
+    double simSeconds = loopCount * LOOP_PERIOD_SECONDS;
+    System.out.printf(
+        "Loops: %d, p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+        loopCount, percentile(sorted, 0.5), percentile(sorted, 0.99), max);
+    System.out.printf(
+        "Simulated %.1f s in %.2f s wall time (%.1fx real time)%n",
+        simSeconds, wallSeconds, simSeconds / wallSeconds);
+    System.out.printf("Final pose: %s, shots fired: %d%n", robot.getPose(), robot.getShotsFired());
+    // The first loops include class loading and JIT warm up, so only check the p99
+    check(
+        "p99 loop time under " + MAX_LOOP_MILLIS + " ms",
+        percentile(sorted, 0.99) < MAX_LOOP_MILLIS);
+  }
+
+  private static double percentile(double[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0.0;
+    }
+    return sorted[Math.max((int) Math.ceil(percentile * sorted.length) - 1, 0)];
+  }
+}
@@ -0,0 +1,48 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.startup;
+
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Training run for the AppCDS archive built on the rio after each deploy.
+ *
+ * <p>Robot code can't be run for training while the deployed robot program owns the HAL, so this
+ * loads every class in the robot jar instead, without initializing them. That covers WPILib and the
+ * vendor libraries as well as our own code. The loaded class list is then dumped into a shared
+ * archive that the robot program maps at startup instead of parsing and verifying each class.
+ */
+public class CdsTraining {
+  public static void main(String... args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: CdsTraining <robot jar>");
+      System.exit(1);
+    }
+    ClassLoader loader = CdsTraining.class.getClassLoader();
+    int loaded = 0;
+    int failed = 0;
+    try (JarFile jar = new JarFile(args[0])) {
+      Enumeration<JarEntry> entries = jar.entries();
+      while (entries.hasMoreElements()) {
+        String name = entries.nextElement().getName();
+        // Skip module descriptors and multi release variants
+        if (!name.endsWith(".class") || name.startsWith("META-INF/") || name.contains("-info")) {
+          continue;
+        }
+        try {
+          Class.forName(name.substring(0, name.length() - 6).replace('/', '.'), false, loader);
+          loaded++;
+        } catch (Throwable e) {
+          // Optional dependencies of some libraries aren't in the jar
+          failed++;
+        }
+      }
+    }
+    System.out.printf("CDS training loaded %d classes, %d failed%n", loaded, failed);
+  }
+}
@@ -0,0 +1,132 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.startup;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Commands;
+import frc.robot.FieldConstants;
+import frc.robot.subsystems.swerve.Module;
+import frc.robot.subsystems.swerve.OdometryIntegrator;
+import frc.robot.subsystems.swerve.SwerveSetpointGenerator;
+import frc.robot.subsystems.swerve.SwerveSubsystem;
+import frc.robot.utils.autoaim.AutoAim;
+import java.lang.management.ManagementFactory;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Exercises the hot paths while disabled after boot, so the JIT has compiled them before the match
+ * starts, and logs how long the robot took to become ready.
+ *
+ * <p>The hot paths are the ones the swerve runs every loop: the setpoint generator, the module
+ * position deltas and the odometry integrator, with and without the IMU. They run on instances
+ * owned here, so the robot's own state isn't touched.
+ *
+ * <p>Time to ready is logged against both JVM uptime and FPGA time. The FPGA clock starts when the
+ * rio boots, so after a brownout reboot it includes the OS and JVM startup as well as our own.
+ */
+public class WarmUp {
+  // Total iterations of the warm up work, about what the JIT needs to compile it
+  public static final int ITERATIONS = 10000;
+  // Iterations per disabled loop, kept small so warm up doesn't overrun the loop
+  public static final int ITERATIONS_PER_LOOP = 200;
+  private static final double LOOP_PERIOD_SECONDS = 0.02;
+  // Odometry samples the odometry thread collects in a loop
+  private static final int SAMPLES_PER_LOOP =
+      (int) Math.round(Module.ODOMETRY_FREQUENCY_HZ * LOOP_PERIOD_SECONDS);
+
+  private final SwerveSetpointGenerator setpointGenerator =
+      new SwerveSetpointGenerator(
+          SwerveSubsystem.getModuleTranslations(),
+          SwerveSubsystem.MAX_LINEAR_SPEED,
+          SwerveSubsystem.MAX_MODULE_ACCELERATION,
+          SwerveSubsystem.MAX_STEER_VELOCITY);
+  private final OdometryIntegrator odometryIntegrator =
+      new OdometryIntegrator(SwerveSubsystem.getModuleTranslations());
+  private final SwerveModulePosition[][] moduleDeltas = new SwerveModulePosition[4][];
+  private final double[] drivePositions = new double[SAMPLES_PER_LOOP];
+  private final Rotation2d[] turnPositions = new Rotation2d[SAMPLES_PER_LOOP];
+  private final Rotation2d[] gyroYaws = new Rotation2d[SAMPLES_PER_LOOP];
+  private final double[] accelX = new double[SAMPLES_PER_LOOP];
+  private final double[] accelY = new double[SAMPLES_PER_LOOP];
+  private final double[] timestamps = new double[SAMPLES_PER_LOOP];
+  private int iterations = 0;
+  private boolean commandsWarmed = false;
+  // Written so the JIT can't eliminate the warm up work
+  private double sink = 0.0;
+
+  /** Logs the time from boot to the end of robotInit. Call at the end of robotInit. */
+  public static void logInitComplete() {
+    Logger.recordOutput(
+        "Startup/Init Complete JVM Uptime (s)",
+        ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+    Logger.recordOutput("Startup/Init Complete FPGA Time (s)", Timer.getFPGATimestamp());
+  }
+
+  /** Returns whether warm up has finished. */
+  public boolean isComplete() {
+    return iterations >= ITERATIONS;
+  }
+
+  /** Runs a slice of the warm up work. Call from disabledPeriodic. */
+  public void periodic() {
+    if (isComplete()) {
+      return;
+    }
+    if (!commandsWarmed) {
+      // Goes through scheduling, composition and the scheduler hooks once
+      Command command =
+          Commands.sequence(Commands.runOnce(() -> {}), Commands.waitSeconds(0.0))
+              .ignoringDisable(true);
+      command.schedule();
+      commandsWarmed = true;
+    }
+
+    int end = Math.min(iterations + ITERATIONS_PER_LOOP, ITERATIONS);
+    for (; iterations < end; iterations++) {
+      double t = iterations * 1e-4;
+      // Changing direction every few hundred iterations, so the steering limit kicks in
+      ChassisSpeeds speeds =
+          new ChassisSpeeds(
+              2.0 * Math.cos(iterations / 300), 2.0 * Math.sin(iterations / 300), 1.0 - t);
+      SwerveModuleState[] states = setpointGenerator.generate(speeds, LOOP_PERIOD_SECONDS);
+
+      double lastPosition = iterations * 0.01;
+      for (int s = 0; s < SAMPLES_PER_LOOP; s++) {
+        drivePositions[s] = lastPosition + 0.002 * (s + 1);
+        turnPositions[s] = states[s % states.length].angle;
+        gyroYaws[s] = Rotation2d.fromRadians(t + s * 1e-3);
+        accelX[s] = 0.5;
+        accelY[s] = -0.2;
+        timestamps[s] = (iterations * SAMPLES_PER_LOOP + s) / Module.ODOMETRY_FREQUENCY_HZ;
+      }
+      for (int i = 0; i < moduleDeltas.length; i++) {
+        moduleDeltas[i] = Module.computePositionDeltas(lastPosition, drivePositions, turnPositions);
+      }
+      // Alternate between fusing the IMU and the wheels alone
+      Pose2d pose =
+          iterations % 2 == 0
+              ? odometryIntegrator.update(moduleDeltas, gyroYaws, timestamps, accelX, accelY, false)
+              : odometryIntegrator.update(moduleDeltas, gyroYaws);
+
+      sink += states[0].speedMetersPerSecond;
+      sink += pose.getX();
+      sink += AutoAim.getVirtualTarget(pose, speeds, FieldConstants.BLUE_SPEAKER_POSE).getX();
+    }
+
+    if (isComplete()) {
+      Logger.recordOutput(
+          "Startup/Ready JVM Uptime (s)",
+          ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+      Logger.recordOutput("Startup/Ready FPGA Time (s)", Timer.getFPGATimestamp());
+      Logger.recordOutput("Startup/Warm Up Checksum", sink);
+    }
+  }
+}
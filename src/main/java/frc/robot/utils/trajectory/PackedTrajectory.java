@@ -0,0 +1,189 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.trajectory;
+
+import com.choreo.lib.Choreo;
+import com.choreo.lib.ChoreoTrajectoryState;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Choreo trajectory stored as packed doubles instead of a list of objects.
+ *
+ * <p>The binary files are generated from the .traj files by the convertChoreoTrajectories gradle
+ * task and memory mapped on load. The format is little endian: a 24 byte header (magic, version,
+ * sample count, padding, total time) followed by 7 doubles per sample (timestamp, x, y, heading,
+ * velocityX, velocityY, angularVelocity). When the binary is missing (ie in sim, which reads
+ * src/main/deploy directly) the JSON trajectory is packed in memory instead.
+ */
+public class PackedTrajectory {
+  public static final int MAGIC = 0x4354524A; // "CTRJ"
+  public static final int VERSION = 1;
+  public static final int HEADER_BYTES = 24;
+  public static final int SAMPLE_DOUBLES = 7;
+
+  private static final int TIMESTAMP = 0;
+  private static final int X = 1;
+  private static final int Y = 2;
+  private static final int HEADING = 3;
+  private static final int VELOCITY_X = 4;
+  private static final int VELOCITY_Y = 5;
+  private static final int ANGULAR_VELOCITY = 6;
+
+  private static final Map<String, PackedTrajectory> cache = new HashMap<>();
+
+  private final DoubleBuffer samples;
+  private final int sampleCount;
+  private final double totalTime;
+
+  private PackedTrajectory(DoubleBuffer samples, int sampleCount, double totalTime) {
+    this.samples = samples;
+    this.sampleCount = sampleCount;
+    this.totalTime = totalTime;
+  }
+
+  /**
+   * Loads a trajectory by name, caching it so later loads are free.
+   *
+   * @param name The trajectory name, without extension
+   * @return The packed trajectory
+   */
+  public static PackedTrajectory load(String name) {
+    return cache.computeIfAbsent(name, PackedTrajectory::loadUncached);
+  }
+
+  private static PackedTrajectory loadUncached(String name) {
+    File file = new File(Filesystem.getDeployDirectory(), "choreo/" + name + ".btraj");
+    if (file.exists()) {
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        ByteBuffer buffer =
+            channel
+                .map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int magic = buffer.getInt(0);
+        int version = buffer.getInt(4);
+        int sampleCount = buffer.getInt(8);
+        double totalTime = buffer.getDouble(16);
+        if (magic == MAGIC
+            && version == VERSION
+            && buffer.capacity() == HEADER_BYTES + sampleCount * SAMPLE_DOUBLES * Double.BYTES) {
+          DoubleBuffer samples =
+              buffer.position(HEADER_BYTES).slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+          return new PackedTrajectory(samples, sampleCount, totalTime);
+        }
+        DriverStation.reportWarning("Invalid packed trajectory " + file + ", using JSON", false);
+      } catch (IOException e) {
+        DriverStation.reportWarning(
+            "Failed to map packed trajectory " + file + ", using JSON", false);
+      }
+    }
+    return fromJson(name);
+  }
+
+  private static PackedTrajectory fromJson(String name) {
+    List<ChoreoTrajectoryState> states = Choreo.getTrajectory(name).getSamples();
+    DoubleBuffer samples = DoubleBuffer.allocate(states.size() * SAMPLE_DOUBLES);
+    for (ChoreoTrajectoryState state : states) {
+      samples.put(state.timestamp);
+      samples.put(state.x);
+      samples.put(state.y);
+      samples.put(state.heading);
+      samples.put(state.velocityX);
+      samples.put(state.velocityY);
+      samples.put(state.angularVelocity);
+    }
+    return new PackedTrajectory(
+        samples, states.size(), states.isEmpty() ? 0.0 : states.get(states.size() - 1).timestamp);
+  }
+
+  /** Returns the total time of the trajectory in seconds. */
+  public double getTotalTime() {
+    return totalTime;
+  }
+
+  /** Returns the number of samples in the trajectory. */
+  public int getSampleCount() {
+    return sampleCount;
+  }
+
+  /**
+   * Samples the trajectory at a point in time, interpolating between the neighboring samples.
+   *
+   * @param timestamp The time since the start of the trajectory in seconds
+   * @return The interpolated state
+   */
+  public ChoreoTrajectoryState sample(double timestamp) {
+    if (sampleCount == 0) {
+      return new ChoreoTrajectoryState(0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
+    }
+    if (timestamp <= get(0, TIMESTAMP)) {
+      return state(0);
+    }
+    if (timestamp >= get(sampleCount - 1, TIMESTAMP)) {
+      return state(sampleCount - 1);
+    }
+
+    // Binary search for the first sample after the timestamp
+    int low = 1;
+    int high = sampleCount - 1;
+    while (low != high) {
+      int mid = (low + high) / 2;
+      if (get(mid, TIMESTAMP) < timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    int previous = low - 1;
+    double previousTime = get(previous, TIMESTAMP);
+    double nextTime = get(low, TIMESTAMP);
+    double t =
+        nextTime - previousTime <= 0.0
+            ? 0.0
+            : (timestamp - previousTime) / (nextTime - previousTime);
+    double heading =
+        get(previous, HEADING)
+            + MathUtil.angleModulus(get(low, HEADING) - get(previous, HEADING)) * t;
+    return new ChoreoTrajectoryState(
+        timestamp,
+        interpolate(previous, low, X, t),
+        interpolate(previous, low, Y, t),
+        heading,
+        interpolate(previous, low, VELOCITY_X, t),
+        interpolate(previous, low, VELOCITY_Y, t),
+        interpolate(previous, low, ANGULAR_VELOCITY, t));
+  }
+
+  private double get(int sample, int field) {
+    return samples.get(sample * SAMPLE_DOUBLES + field);
+  }
+
+  private double interpolate(int start, int end, int field, double t) {
+    return MathUtil.interpolate(get(start, field), get(end, field), t);
+  }
+
+  private ChoreoTrajectoryState state(int sample) {
+    return new ChoreoTrajectoryState(
+        get(sample, TIMESTAMP),
+        get(sample, X),
+        get(sample, Y),
+        get(sample, HEADING),
+        get(sample, VELOCITY_X),
+        get(sample, VELOCITY_Y),
+        get(sample, ANGULAR_VELOCITY));
+  }
+}
@@ -0,0 +1,60 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.swerve;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import org.junit.jupiter.api.Test;
+
+class SwerveSetpointGeneratorTest {
+  private static final double HALF_TRACK = 0.3;
+  private static final Translation2d[] MODULE_TRANSLATIONS = {
+    new Translation2d(HALF_TRACK, HALF_TRACK),
+    new Translation2d(HALF_TRACK, -HALF_TRACK),
+    new Translation2d(-HALF_TRACK, HALF_TRACK),
+    new Translation2d(-HALF_TRACK, -HALF_TRACK)
+  };
+  private static final double DT = 0.02;
+  // About 0.45 rad per step, so a 90 degree turn takes several steps
+  private static final double MAX_STEER_VELOCITY = 0.45 / DT;
+
+  private static SwerveModuleState[] run(ChassisSpeeds speeds, int steps) {
+    var generator = new SwerveSetpointGenerator(MODULE_TRANSLATIONS, 4.5, 10.0, MAX_STEER_VELOCITY);
+    SwerveModuleState[] states = null;
+    for (int i = 0; i < steps; i++) {
+      states = generator.generate(speeds, DT);
+    }
+    return states;
+  }
+
+  @Test
+  void strafesFromRest() {
+    // Modules start at 0 degrees, 90 degrees from the request
+    for (SwerveModuleState state : run(new ChassisSpeeds(0.0, 3.0, 0.0), 100)) {
+      // Either direction, modules may flip
+      assertEquals(3.0, Math.abs(state.speedMetersPerSecond), 1e-3);
+      assertEquals(1.0, Math.abs(state.angle.getSin()), 1e-3);
+      assertEquals(3.0, state.speedMetersPerSecond * state.angle.getSin(), 1e-3);
+    }
+  }
+
+  @Test
+  void spinsFromRest() {
+    double omega = 1.5;
+    double expectedSpeed = omega * Math.hypot(HALF_TRACK, HALF_TRACK);
+    SwerveModuleState[] states = run(new ChassisSpeeds(0.0, 0.0, omega), 100);
+    for (int i = 0; i < states.length; i++) {
+      Translation2d translation = MODULE_TRANSLATIONS[i];
+      double vx = states[i].speedMetersPerSecond * states[i].angle.getCos();
+      double vy = states[i].speedMetersPerSecond * states[i].angle.getSin();
+      assertEquals(-omega * translation.getY(), vx, 1e-3);
+      assertEquals(omega * translation.getX(), vy, 1e-3);
+      assertEquals(expectedSpeed, Math.abs(states[i].speedMetersPerSecond), 1e-3);
+    }
+  }
+}